@@ -0,0 +1,97 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.SyllableScanner;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieConfig;
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+
+/**
+ * Loads the dictionaries and texts of <code>resources/</code> for the benchmarks. The directory
+ * can be changed with <code>-Dwordbreak.resources=...</code>.
+ *
+ * @author Chris
+ */
+public class Corpus {
+
+	public static File resource(String name) {
+		return new File(System.getProperty("wordbreak.resources", "resources"), name);
+	}
+
+	/**
+	 * Builds a dictionary as <code>Test.initDict</code> does.
+	 */
+	public static Trie loadDictionary(String name, TrieConfig config) throws IOException {
+		TrieBuilder dict = new TrieBuilder(config);
+
+		BufferedReader dictReader = new BufferedReader(new InputStreamReader(new FileInputStream(resource(name)), "UTF-8"));
+		try {
+			String entryStr = null;
+			while ((entryStr = dictReader.readLine()) != null) {
+				dict.addKeyword(entryStr);
+			}
+		} finally {
+			dictReader.close();
+		}
+
+		return dict.build();
+	}
+
+	public static Trie loadDictionary(String name) throws IOException {
+		return loadDictionary(name, new TrieConfig());
+	}
+
+	/**
+	 * @return the number of yi ge in the lines of the file
+	 */
+	public static long countLineSyllables(String name) throws IOException {
+		long count = 0;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resource(name)), "UTF-8"));
+		try {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				count += SyllableScanner.count(line);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return count;
+	}
+
+	public static List<String> loadClauses(String name) throws IOException {
+		List<String> clauses = new ArrayList<String>();
+
+		ClauseReader reader = new ClauseReader(new FileInputStream(resource(name)).getChannel());
+		try {
+			String clause = null;
+			while ((clause = reader.nextClause()) != null) {
+				clauses.add(clause);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return clauses;
+	}
+
+	public static long countSyllables(List<String> clauses) {
+		long count = 0;
+
+		for (String clause : clauses) {
+			count += SyllableScanner.count(clause);
+		}
+
+		return count;
+	}
+
+}
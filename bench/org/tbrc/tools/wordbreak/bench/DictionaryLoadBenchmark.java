@@ -0,0 +1,52 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+
+/**
+ * Reading and compiling each dictionary of <code>resources/</code>, as <code>Test.initDict</code>.
+ * Syllables are those of the dictionary lines.
+ *
+ * @author Chris
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DictionaryLoadBenchmark {
+
+	@Param({ "chos-skad-dict.txt", "dan-martin-headwords-01.txt", "jim-valby-headwords-01.txt",
+		"ming-mdzod-2014-11-14-names.txt", "thupten_phuntsok_terms.txt", "tshig-mdzod-chen-mo-utf8-headwords-01.txt" })
+	public String dictionary;
+
+	private long syllables;
+
+	@Setup(Level.Trial)
+	public void count() throws IOException {
+		syllables = Corpus.countLineSyllables(dictionary);
+	}
+
+	@Benchmark
+	public Trie initDict(SyllableCounter counter) throws IOException {
+		counter.syllables += syllables;
+
+		return Corpus.loadDictionary(dictionary);
+	}
+
+}
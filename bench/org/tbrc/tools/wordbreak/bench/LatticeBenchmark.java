@@ -0,0 +1,49 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Lattice;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+
+/**
+ * <code>Trie.lattice</code> clause by clause and the <code>k</code> best paths through each
+ * lattice, to compare with <code>TokenizeBenchmark</code>.
+ *
+ * @author Chris
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LatticeBenchmark {
+
+	@Param({ "1", "5" })
+	public int k;
+
+	private ParseContext context = new ParseContext();
+
+	@Benchmark
+	public void bestPaths(TextState state, SyllableCounter counter, Blackhole blackhole) {
+		for (String clause : state.clauses) {
+			Lattice lattice = state.dict.lattice(clause, context);
+
+			blackhole.consume(lattice.bestPaths(k));
+		}
+
+		counter.syllables += state.syllables;
+	}
+
+}
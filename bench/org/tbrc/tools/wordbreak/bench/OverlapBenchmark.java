@@ -0,0 +1,155 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.IntervalTree;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.Intervalable;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.OverlapResolver;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.ViterbiSegmenter;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Emit;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieConfig;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.YiGeSeq;
+
+/**
+ * Removing the overlapping emits of each clause, with <code>IntervalTree.removeOverlaps</code>
+ * and with the <code>OverlapResolver</code> that replaced it, or keeping the best path through
+ * them with the <code>ViterbiSegmenter</code>. The emits, all of them, are collected once per
+ * trial.
+ *
+ * @author Chris
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class OverlapBenchmark {
+
+	@Param({ "thupten_phuntsok_terms.txt" })
+	public String dictionary;
+
+	@Param({ "W4CZ5369-I1KG9127-0000.txt" })
+	public String text;
+
+	private List<List<Intervalable>> clauseEmits;
+
+	private long syllables;
+
+	private OverlapResolver resolver = new OverlapResolver();
+
+	private ViterbiSegmenter segmenter = new ViterbiSegmenter();
+
+	/** the emits of each clause as starts, ends and keyword IDs, for the segmenter */
+	private List<int[][]> clauseArrays;
+
+	private List<Integer> clauseLengths;
+
+	/** the same cost for every keyword; the time taken does not depend on the costs */
+	private double[] costs;
+
+	@Setup(Level.Trial)
+	public void collect() throws IOException {
+		TrieConfig config = new TrieConfig();
+		config.setAllowOverlaps(true);
+
+		Trie dict = Corpus.loadDictionary(dictionary, config);
+		List<String> clauses = Corpus.loadClauses(text);
+		ParseContext context = new ParseContext();
+
+		clauseEmits = new ArrayList<List<Intervalable>>(clauses.size());
+		clauseArrays = new ArrayList<int[][]>(clauses.size());
+		clauseLengths = new ArrayList<Integer>(clauses.size());
+
+		for (String clause : clauses) {
+			YiGeSeq seq = new YiGeSeq(clause);
+			List<Intervalable> emits = new ArrayList<Intervalable>();
+			int[][] arrays = new int[3][];
+
+			for (Emit emit : dict.parseText(seq, context)) {
+				emits.add(emit);
+			}
+
+			arrays[0] = new int[emits.size()];
+			arrays[1] = new int[emits.size()];
+			arrays[2] = new int[emits.size()];
+
+			for (int i = 0; i < emits.size(); i++) {
+				Emit emit = (Emit) emits.get(i);
+
+				arrays[0][i] = emit.getStart();
+				arrays[1][i] = emit.getEnd();
+				arrays[2][i] = emit.getKeywordId();
+			}
+
+			clauseEmits.add(emits);
+			clauseArrays.add(arrays);
+			clauseLengths.add(seq.length());
+		}
+
+		costs = new double[dict.getKeywordCount()];
+		Arrays.fill(costs, 1.0);
+
+		syllables = Corpus.countSyllables(clauses);
+	}
+
+	@Benchmark
+	public void intervalTree(SyllableCounter counter, Blackhole blackhole) {
+		for (List<Intervalable> emits : clauseEmits) {
+			List<Intervalable> copy = new ArrayList<Intervalable>(emits);
+
+			if (! copy.isEmpty()) {
+				new IntervalTree(copy).removeOverlaps(copy);
+			}
+
+			blackhole.consume(copy);
+		}
+
+		counter.syllables += syllables;
+	}
+
+	@Benchmark
+	public void overlapResolver(SyllableCounter counter, Blackhole blackhole) {
+		for (List<Intervalable> emits : clauseEmits) {
+			List<Intervalable> copy = new ArrayList<Intervalable>(emits);
+
+			blackhole.consume(resolver.removeOverlaps(copy));
+		}
+
+		counter.syllables += syllables;
+	}
+
+	@Benchmark
+	public void viterbiSegmenter(SyllableCounter counter, Blackhole blackhole) {
+		for (int c = 0; c < clauseArrays.size(); c++) {
+			int[][] arrays = clauseArrays.get(c);
+			int[] starts = arrays[0].clone();
+			int[] ends = arrays[1].clone();
+			int[] keywordIds = arrays[2].clone();
+
+			blackhole.consume(segmenter.segment(starts, ends, keywordIds, starts.length, clauseLengths.get(c), costs, 2.0));
+		}
+
+		counter.syllables += syllables;
+	}
+
+}
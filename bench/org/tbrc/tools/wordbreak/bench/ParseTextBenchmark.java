@@ -0,0 +1,43 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.YiGeSeq;
+
+/**
+ * <code>Trie.parseText</code> over the clauses of the text, already split into yi ge: the
+ * automaton and the overlap removal.
+ *
+ * @author Chris
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParseTextBenchmark {
+
+	private ParseContext context = new ParseContext();
+
+	@Benchmark
+	public void parseText(TextState state, SyllableCounter counter, Blackhole blackhole) {
+		for (YiGeSeq seq : state.seqs) {
+			blackhole.consume(state.dict.parseText(seq, context));
+		}
+
+		counter.syllables += state.syllables;
+	}
+
+}
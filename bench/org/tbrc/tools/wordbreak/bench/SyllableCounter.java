@@ -0,0 +1,27 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the yi ge processed by a benchmark, so that JMH reports syllables/sec next to ops/sec.
+ * Divide <code>gc.alloc.rate.norm</code>, bytes per op from <code>-prof gc</code>, by the
+ * syllables per op for the bytes allocated per syllable.
+ *
+ * @author Chris
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class SyllableCounter {
+
+	public long syllables;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		syllables = 0;
+	}
+
+}
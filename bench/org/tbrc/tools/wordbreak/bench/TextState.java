@@ -0,0 +1,51 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.YiGeSeq;
+
+/**
+ * A dictionary and the clauses of a text, loaded once per trial.
+ *
+ * @author Chris
+ */
+@State(Scope.Benchmark)
+public class TextState {
+
+	@Param({ "thupten_phuntsok_terms.txt" })
+	public String dictionary;
+
+	@Param({ "W4CZ5369-I1KG9127-0000.txt" })
+	public String text;
+
+	public Trie dict;
+
+	public List<String> clauses;
+
+	public List<YiGeSeq> seqs;
+
+	/** the number of yi ge in the clauses */
+	public long syllables;
+
+	@Setup(Level.Trial)
+	public void load() throws IOException {
+		dict = Corpus.loadDictionary(dictionary);
+		clauses = Corpus.loadClauses(text);
+		syllables = Corpus.countSyllables(clauses);
+
+		seqs = new ArrayList<YiGeSeq>(clauses.size());
+
+		for (String clause : clauses) {
+			seqs.add(new YiGeSeq(clause));
+		}
+	}
+
+}
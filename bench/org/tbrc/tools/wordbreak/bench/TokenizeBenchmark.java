@@ -0,0 +1,69 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TokenSink;
+
+/**
+ * <code>Trie.tokenize</code> clause by clause, building <code>Token</code>s and through a
+ * <code>TokenSink</code>.
+ *
+ * @author Chris
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TokenizeBenchmark {
+
+	private ParseContext context = new ParseContext();
+
+	/** feeds every token to the blackhole */
+	private static class BlackholeSink implements TokenSink {
+
+		private final Blackhole blackhole;
+
+		BlackholeSink(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void token(int kind, int startOffset, int endOffset, int keywordId) {
+			blackhole.consume(endOffset - startOffset + keywordId);
+		}
+	}
+
+	@Benchmark
+	public void tokens(TextState state, SyllableCounter counter, Blackhole blackhole) {
+		for (String clause : state.clauses) {
+			blackhole.consume(state.dict.tokenize(clause, context));
+		}
+
+		counter.syllables += state.syllables;
+	}
+
+	@Benchmark
+	public void sink(TextState state, SyllableCounter counter, Blackhole blackhole) {
+		TokenSink sink = new BlackholeSink(blackhole);
+
+		for (String clause : state.clauses) {
+			state.dict.tokenize(clause, sink, context);
+		}
+
+		counter.syllables += state.syllables;
+	}
+
+}
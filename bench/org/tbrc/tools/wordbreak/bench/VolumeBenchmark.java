@@ -0,0 +1,82 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.MappedText;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TokenSink;
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+
+/**
+ * A whole volume end to end, as <code>CountWordsInDocs</code> does it: reading and normalizing
+ * the file, splitting it into clauses and counting the tokens of each; and the same through a
+ * memory-mapped <code>MappedText</code>.
+ *
+ * @author Chris
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VolumeBenchmark {
+
+	private static class WordCounter implements TokenSink {
+
+		int wordCount = 0;
+
+		@Override
+		public void token(int kind, int startOffset, int endOffset, int keywordId) {
+			wordCount++;
+		}
+	}
+
+	@Benchmark
+	public int countWords(TextState state, SyllableCounter counter) throws IOException {
+		ParseContext context = new ParseContext();
+		WordCounter words = new WordCounter();
+
+		ClauseReader reader = new ClauseReader(new FileInputStream(Corpus.resource(state.text)).getChannel());
+		try {
+			String clause = null;
+			while ((clause = reader.nextClause()) != null) {
+				state.dict.tokenize(clause, words, context);
+			}
+		} finally {
+			reader.close();
+		}
+
+		counter.syllables += context.getYiGeCount();
+
+		return words.wordCount;
+	}
+
+	@Benchmark
+	public int countWordsMapped(TextState state, SyllableCounter counter) throws IOException {
+		ParseContext context = new ParseContext();
+		WordCounter words = new WordCounter();
+
+		MappedText text = new MappedText(Corpus.resource(state.text), state.dict.getSyllableTable());
+		try {
+			while (text.nextClause(context)) {
+				state.dict.tokenize(text, words, context);
+			}
+		} finally {
+			text.close();
+		}
+
+		counter.syllables += context.getYiGeCount();
+
+		return words.wordCount;
+	}
+
+}
@@ -0,0 +1,36 @@
+package org.tbrc.tools.wordbreak.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.YiGeSeq;
+
+/**
+ * Splitting every clause of the text into a <code>YiGeSeq</code>.
+ *
+ * @author Chris
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class YiGeSeqBenchmark {
+
+	@Benchmark
+	public void construct(TextState state, SyllableCounter counter, Blackhole blackhole) {
+		for (String clause : state.clauses) {
+			blackhole.consume(new YiGeSeq(clause));
+		}
+
+		counter.syllables += state.syllables;
+	}
+
+}
@@ -0,0 +1,174 @@
+package org.tbrc.tools.wordbreak.ahocorasick.interval;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes overlapping intervals as <code>IntervalTree.removeOverlaps</code> does: the longest
+ * interval is kept first, the leftmost of equally long ones first, and every interval that
+ * overlaps a kept one is dropped. Intervals with the same start and end are kept or dropped
+ * together.
+ * <p>
+ * No tree is built. The intervals must be ordered by end position, as the emits of the
+ * automaton are, so that bucketing them by size leaves each bucket ordered by start; each
+ * interval is then checked against an occupancy array of the positions taken by the intervals
+ * kept so far. The cost is linear in the total size of the intervals.
+ *
+ * @author Chris
+ */
+public class OverlapResolver {
+
+	/** the intervals in order of size, longest first, and start */
+	private int[] order = new int[64];
+
+	private int[] bucketStart = new int[16];
+
+	/** the index of the interval kept over each position, -1 if none */
+	private int[] owner = new int[64];
+
+	private boolean[] keep = new boolean[64];
+
+	/** the starts and ends of the intervals given as a list */
+	private int[] starts = new int[64];
+
+	private int[] ends = new int[64];
+
+	/**
+	 * Removes the overlapping intervals from <code>intervals</code>, which must be ordered by end
+	 * position; those that remain are ordered by start position.
+	 *
+	 * @return <code>intervals</code>
+	 */
+	public <T extends Intervalable> List<T> removeOverlaps(List<T> intervals) {
+		int count = intervals.size();
+
+		if (count < 2) {
+			return intervals;
+		}
+
+		if (starts.length < count) {
+			starts = new int[Math.max(count, 2 * starts.length)];
+			ends = new int[starts.length];
+		}
+
+		for (int i = 0; i < count; i++) {
+			starts[i] = intervals.get(i).getStart();
+			ends[i] = intervals.get(i).getEnd();
+		}
+
+		select(starts, ends, count);
+
+		// the kept intervals do not overlap, so in end order they are in start order as well
+		int kept = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (keep[i]) {
+				intervals.set(kept++, intervals.get(i));
+			}
+		}
+
+		intervals.subList(kept, count).clear();
+
+		return intervals;
+	}
+
+	/**
+	 * Removes the overlapping intervals <code>[starts[i], ends[i]]</code>, ordered by end position,
+	 * compacting <code>starts</code>, <code>ends</code> and <code>values</code> in place.
+	 *
+	 * @return the number of intervals left
+	 */
+	public int removeOverlaps(int[] starts, int[] ends, int[] values, int count) {
+		if (count < 2) {
+			return count;
+		}
+
+		select(starts, ends, count);
+
+		int kept = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (keep[i]) {
+				starts[kept] = starts[i];
+				ends[kept] = ends[i];
+				values[kept] = values[i];
+				kept++;
+			}
+		}
+
+		return kept;
+	}
+
+	/**
+	 * Sets <code>keep[i]</code> for each of the <code>count</code> intervals.
+	 */
+	private void select(int[] starts, int[] ends, int count) {
+		int maxSize = 0;
+		int maxEnd = 0;
+
+		for (int i = 0; i < count; i++) {
+			maxSize = Math.max(maxSize, ends[i] - starts[i] + 1);
+			maxEnd = Math.max(maxEnd, ends[i]);
+		}
+
+		ensureCapacity(count, maxSize, maxEnd);
+
+		// counting sort on size, longest first; it is stable so each bucket stays ordered by start
+		Arrays.fill(bucketStart, 0, maxSize + 2, 0);
+
+		for (int i = 0; i < count; i++) {
+			bucketStart[maxSize - (ends[i] - starts[i] + 1) + 1]++;
+		}
+
+		for (int size = 1; size <= maxSize + 1; size++) {
+			bucketStart[size] += bucketStart[size - 1];
+		}
+
+		for (int i = 0; i < count; i++) {
+			order[bucketStart[maxSize - (ends[i] - starts[i] + 1)]++] = i;
+		}
+
+		Arrays.fill(owner, 0, maxEnd + 1, -1);
+
+		for (int k = 0; k < count; k++) {
+			int i = order[k];
+			int start = starts[i];
+			int end = ends[i];
+
+			keep[i] = true;
+
+			for (int pos = start; pos <= end; pos++) {
+				int kept = owner[pos];
+
+				if (kept >= 0 && (starts[kept] != start || ends[kept] != end)) {
+					keep[i] = false;
+					break;
+				}
+			}
+
+			if (keep[i]) {
+				for (int pos = start; pos <= end; pos++) {
+					if (owner[pos] < 0) {
+						owner[pos] = i;
+					}
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int count, int maxSize, int maxEnd) {
+		if (order.length < count) {
+			order = new int[Math.max(count, 2 * order.length)];
+			keep = new boolean[order.length];
+		}
+
+		if (bucketStart.length < maxSize + 2) {
+			bucketStart = new int[Math.max(maxSize + 2, 2 * bucketStart.length)];
+		}
+
+		if (owner.length < maxEnd + 1) {
+			owner = new int[Math.max(maxEnd + 1, 2 * owner.length)];
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.tbrc.tools.wordbreak.ahocorasick.interval;
+
+import java.util.Arrays;
+
+/**
+ * Removes overlapping intervals by keeping the set of least total cost rather than the longest
+ * first: the positions <code>0 ... length - 1</code> are covered by the intervals kept and by
+ * single positions left uncovered, interval <code>i</code> costing <code>costs[values[i]]</code>
+ * and an uncovered position <code>gapCost</code>. With costs of <code>-log p</code> this is the
+ * most probable path through the lattice of the intervals, found by the Viterbi algorithm.
+ * <p>
+ * The intervals must be ordered by end position, as the emits of the automaton are, so that the
+ * best path to each position is final once the intervals ending before it have been seen. The
+ * cost is linear in the length and the number of intervals. Of paths of equal cost, the one
+ * through the interval that comes first at a position is kept, and an interval over an
+ * uncovered position.
+ *
+ * @author Chris
+ */
+public class ViterbiSegmenter {
+
+	/** the least cost of covering positions <code>0 ... p - 1</code> */
+	private double[] best = new double[65];
+
+	/** the last interval of the best path to <code>p</code>, -1 if position <code>p - 1</code> is uncovered */
+	private int[] back = new int[65];
+
+	private boolean[] keep = new boolean[64];
+
+	/**
+	 * Keeps the intervals <code>[starts[i], ends[i]]</code> of the best path, compacting
+	 * <code>starts</code>, <code>ends</code> and <code>values</code> in place; those left are
+	 * ordered by start position.
+	 *
+	 * @param length the number of positions, greater than the end of every interval
+	 * @param costs the cost of an interval, indexed by its value
+	 * @return the number of intervals left
+	 */
+	public int segment(int[] starts, int[] ends, int[] values, int count, int length, double[] costs, double gapCost) {
+		if (count == 0) {
+			return 0;
+		}
+
+		ensureCapacity(count, length);
+
+		best[0] = 0;
+		int i = 0;
+
+		for (int p = 0; p < length; p++) {
+			double cost = best[p] + gapCost;
+			int last = -1;
+
+			for (; i < count && ends[i] == p; i++) {
+				double through = best[starts[i]] + costs[values[i]];
+
+				if (through < cost || (last < 0 && through == cost)) {
+					cost = through;
+					last = i;
+				}
+			}
+
+			best[p + 1] = cost;
+			back[p + 1] = last;
+		}
+
+		Arrays.fill(keep, 0, count, false);
+
+		for (int p = length; p > 0; ) {
+			int last = back[p];
+
+			if (last < 0) {
+				p--;
+			} else {
+				keep[last] = true;
+				p = starts[last];
+			}
+		}
+
+		// the kept intervals do not overlap, so in end order they are in start order as well
+		int kept = 0;
+
+		for (i = 0; i < count; i++) {
+			if (keep[i]) {
+				starts[kept] = starts[i];
+				ends[kept] = ends[i];
+				values[kept] = values[i];
+				kept++;
+			}
+		}
+
+		return kept;
+	}
+
+	private void ensureCapacity(int count, int length) {
+		if (keep.length < count) {
+			keep = new boolean[Math.max(count, 2 * keep.length)];
+		}
+
+		if (best.length < length + 1) {
+			best = new double[Math.max(length + 1, 2 * best.length)];
+			back = new int[best.length];
+		}
+	}
+
+}
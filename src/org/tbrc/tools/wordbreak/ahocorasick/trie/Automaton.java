@@ -0,0 +1,48 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+/**
+ * A frozen Aho-Corasick automaton over syllable codes, as used by <code>Trie.parseText</code>
+ * once the trie is compiled. States are <code>int</code>s and the root is state 0.
+ * <p>
+ * The code of a syllable is its <code>SyllableTable</code> ID plus one, see
+ * <code>DoubleArrayTrie.code</code>; code 0 is a syllable that no transition uses.
+ *
+ * @author Chris
+ */
+public interface Automaton {
+
+	/** the root state */
+	public static final int ROOT = 0;
+
+	/** syllable code for a yi ge that is not used by any transition */
+	public static final int UNKNOWN = 0;
+
+	/** no state, e.g., the output of a state with no keyword along its failure links */
+	public static final int NONE = -1;
+
+	/**
+	 * @return the state reached from <code>state</code> on <code>code</code>, falling back along
+	 * the failure links as needed. The root never fails.
+	 */
+	public int nextState(int state, int code);
+
+	/**
+	 * @return the ID of the keyword that ends in the state, -1 if none
+	 */
+	public int keyword(int state);
+
+	/**
+	 * @return the dictionary suffix link of the state: the nearest state along its failure links
+	 * that has a keyword, or <code>NONE</code>. A state emits its own keyword and then those of
+	 * the chain of output links.
+	 */
+	public int output(int state);
+
+	public int getStateCount();
+
+	/**
+	 * @return the approximate heap used by the arrays of the automaton
+	 */
+	public long getSizeInBytes();
+
+}
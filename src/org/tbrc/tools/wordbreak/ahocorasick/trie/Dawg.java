@@ -0,0 +1,426 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal acyclic automaton, or directed acyclic word graph, over sequences of syllable codes:
+ * the trie of the words with every pair of states that accept the same suffixes merged into one.
+ * It is built with the incremental algorithm of Daciuk et al. for sorted input, so that only the
+ * minimal graph and the path of the last word are ever held.
+ * <p>
+ * Once states are shared a state no longer stands for one word, so a word is identified by
+ * perfect hashing instead: its rank among the words in lexicographic order, which is the sum of
+ * the <code>rankOffset</code>s of the transitions taken. <code>word</code> maps the rank back to
+ * the index of the word as given.
+ * <p>
+ * The graph is stored in arrays: the transitions of each state, sorted by code, are
+ * <code>labels[first[s]] ... labels[first[s + 1] - 1]</code>; the root, which has far more
+ * transitions than any other state, also has a dense table indexed by code.
+ * <p>
+ * The price of the smaller graph is the parse. With no failure links, <code>Trie</code> finds the
+ * keywords ending at each position by walking back from it, up to
+ * <code>getMaxWordLength()</code> syllables, so a text of n syllables takes O(n&middot;L) steps
+ * for keywords of at most L syllables, where the Aho-Corasick automata take O(n) plus the
+ * emits. The walks are short on real text, as most end after a syllable or two, but a text full
+ * of long keywords and their prefixes comes close to the bound.
+ *
+ * @author Chris
+ */
+public class Dawg {
+
+	/** the root state */
+	public static final int ROOT = 0;
+
+	/** no transition */
+	public static final int NONE = -1;
+
+	/** rows no longer than this are searched linearly */
+	private static final int LINEAR_SEARCH = 8;
+
+	/** the transitions of state s are first[s] ... first[s + 1] - 1 */
+	private int[] first;
+
+	private int[] labels;
+
+	private int[] targets;
+
+	/** what a transition adds to the rank of the words through it */
+	private int[] rankOffsets;
+
+	private boolean[] finals;
+
+	/** the transition from the root on each code, NONE if none */
+	private int[] rootTransitions;
+
+	/** the index, in the words given, of the word of each rank */
+	private int[] words;
+
+	private int maxWordLength = 0;
+
+	/**
+	 * @param words distinct, non-empty sequences of codes greater than 0
+	 */
+	public Dawg(int[][] words) {
+		build(words);
+	}
+
+	/**
+	 * @return the transition from <code>state</code> on <code>code</code>, or <code>NONE</code>
+	 */
+	public int transition(int state, int code) {
+		if (state == ROOT) {
+			return code < rootTransitions.length ? rootTransitions[code] : NONE;
+		}
+
+		int lo = first[state];
+		int hi = first[state + 1] - 1;
+
+		if (hi - lo < LINEAR_SEARCH) {
+			for (int i = lo; i <= hi; i++) {
+				if (labels[i] == code) {
+					return i;
+				}
+			}
+		} else {
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int label = labels[mid];
+
+				if (label < code) {
+					lo = mid + 1;
+				} else if (label > code) {
+					hi = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * @return the state a transition leads to
+	 */
+	public int target(int transition) {
+		return targets[transition];
+	}
+
+	public int rankOffset(int transition) {
+		return rankOffsets[transition];
+	}
+
+	/**
+	 * @return whether a word ends in the state
+	 */
+	public boolean isFinal(int state) {
+		return finals[state];
+	}
+
+	/**
+	 * @return the index of the word with the given rank, the sum of the <code>rankOffset</code>s
+	 * of the transitions to its final state
+	 */
+	public int word(int rank) {
+		return words[rank];
+	}
+
+	/**
+	 * @return the index of the word, or <code>NONE</code> if it is not one of the words
+	 */
+	public int lookup(int[] word) {
+		int state = ROOT;
+		int rank = 0;
+
+		for (int code : word) {
+			int transition = transition(state, code);
+
+			if (transition == NONE) {
+				return NONE;
+			}
+
+			rank += rankOffsets[transition];
+			state = targets[transition];
+		}
+
+		return finals[state] ? words[rank] : NONE;
+	}
+
+	public int getWordCount() {
+		return words.length;
+	}
+
+	public int getStateCount() {
+		return finals.length;
+	}
+
+	public int getTransitionCount() {
+		return labels.length;
+	}
+
+	/**
+	 * @return the length of the longest word, the most syllables a parse walks back from a position
+	 */
+	public int getMaxWordLength() {
+		return maxWordLength;
+	}
+
+	/**
+	 * @return the approximate heap used by the arrays
+	 */
+	public long getSizeInBytes() {
+		return 4L * (first.length + labels.length + targets.length + rankOffsets.length + rootTransitions.length + words.length)
+				+ finals.length;
+	}
+
+	//=========== BUILDING
+
+	/**
+	 * A state while building. Once registered it is never changed, so it can be compared and
+	 * hashed by its finality and its transitions to registered states.
+	 */
+	private static class Node {
+
+		private boolean isFinal = false;
+
+		private int[] labels = new int[0];
+
+		private Node[] targets = new Node[0];
+
+		/** the state number in the arrays, -1 until numbered */
+		private int id = -1;
+
+		/** the number of words accepted from the node, -1 until counted */
+		private int count = -1;
+
+		Node lastTarget() {
+			return targets[targets.length - 1];
+		}
+
+		void add(int label, Node target) {
+			int size = labels.length;
+
+			labels = Arrays.copyOf(labels, size + 1);
+			targets = Arrays.copyOf(targets, size + 1);
+			labels[size] = label;
+			targets[size] = target;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (! (o instanceof Node)) {
+				return false;
+			}
+
+			Node other = (Node) o;
+
+			if (isFinal != other.isFinal || ! Arrays.equals(labels, other.labels)) {
+				return false;
+			}
+
+			for (int i = 0; i < targets.length; i++) {
+				if (targets[i] != other.targets[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = isFinal ? 1 : 0;
+
+			for (int i = 0; i < labels.length; i++) {
+				h = 31 * (31 * h + labels[i]) + System.identityHashCode(targets[i]);
+			}
+
+			return h;
+		}
+	}
+
+	private void build(final int[][] words) {
+		Integer[] order = new Integer[words.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compareWords(words[a], words[b]);
+			}
+		});
+
+		Node root = new Node();
+		Map<Node, Node> register = new HashMap<Node, Node>();
+
+		for (Integer index : order) {
+			int[] word = words[index];
+
+			maxWordLength = Math.max(maxWordLength, word.length);
+
+			// the words are sorted, so the prefix shared with the previous one is along the last transitions
+			Node state = root;
+			int prefix = 0;
+
+			while (prefix < word.length && state.labels.length > 0 && state.labels[state.labels.length - 1] == word[prefix]) {
+				state = state.lastTarget();
+				prefix++;
+			}
+
+			if (state.labels.length > 0) {
+				replaceOrRegister(state, register);
+			}
+
+			for (int i = prefix; i < word.length; i++) {
+				Node next = new Node();
+
+				state.add(word[i], next);
+				state = next;
+			}
+
+			state.isFinal = true;
+		}
+
+		if (root.labels.length > 0) {
+			replaceOrRegister(root, register);
+		}
+
+		freeze(root, words);
+	}
+
+	private static int compareWords(int[] a, int[] b) {
+		int length = Math.min(a.length, b.length);
+
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) {
+				return a[i] < b[i] ? -1 : 1;
+			}
+		}
+
+		return a.length - b.length;
+	}
+
+	/**
+	 * Replaces the last target of <code>state</code>, and below it the path of the previous
+	 * word, by the equivalent registered states, registering those that have none.
+	 */
+	private static void replaceOrRegister(Node state, Map<Node, Node> register) {
+		Node child = state.lastTarget();
+
+		if (child.labels.length > 0) {
+			replaceOrRegister(child, register);
+		}
+
+		Node equivalent = register.get(child);
+
+		if (equivalent != null) {
+			state.targets[state.targets.length - 1] = equivalent;
+		} else {
+			register.put(child, child);
+		}
+	}
+
+	private void freeze(Node root, int[][] words) {
+		// number the states breadth first
+		List<Node> nodes = new ArrayList<Node>();
+		int transitionCount = 0;
+
+		root.id = 0;
+		nodes.add(root);
+
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get(i);
+
+			transitionCount += node.labels.length;
+
+			for (Node target : node.targets) {
+				if (target.id < 0) {
+					target.id = nodes.size();
+					nodes.add(target);
+				}
+			}
+		}
+
+		first = new int[nodes.size() + 1];
+		labels = new int[transitionCount];
+		targets = new int[transitionCount];
+		rankOffsets = new int[transitionCount];
+		finals = new boolean[nodes.size()];
+
+		int next = 0;
+
+		for (int s = 0; s < nodes.size(); s++) {
+			Node node = nodes.get(s);
+			int rank = node.isFinal ? 1 : 0;
+
+			first[s] = next;
+			finals[s] = node.isFinal;
+
+			for (int i = 0; i < node.labels.length; i++) {
+				labels[next] = node.labels[i];
+				targets[next] = node.targets[i].id;
+				rankOffsets[next] = rank;
+				rank += count(node.targets[i]);
+				next++;
+			}
+		}
+
+		first[nodes.size()] = next;
+
+		int maxCode = 0;
+
+		for (int i = first[ROOT]; i < first[ROOT + 1]; i++) {
+			maxCode = Math.max(maxCode, labels[i]);
+		}
+
+		rootTransitions = new int[maxCode + 1];
+		Arrays.fill(rootTransitions, NONE);
+
+		for (int i = first[ROOT]; i < first[ROOT + 1]; i++) {
+			rootTransitions[labels[i]] = i;
+		}
+
+		// the words are distinct, so their ranks are 0 ... words.length - 1
+		this.words = new int[words.length];
+
+		for (int index = 0; index < words.length; index++) {
+			int state = ROOT;
+			int rank = 0;
+
+			for (int code : words[index]) {
+				int transition = transition(state, code);
+
+				rank += rankOffsets[transition];
+				state = targets[transition];
+			}
+
+			this.words[rank] = index;
+		}
+	}
+
+	/**
+	 * @return the number of words accepted from the node
+	 */
+	private static int count(Node node) {
+		if (node.count < 0) {
+			int count = node.isFinal ? 1 : 0;
+
+			for (Node target : node.targets) {
+				count += count(target);
+			}
+
+			node.count = count;
+		}
+
+		return node.count;
+	}
+
+}
@@ -0,0 +1,229 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * The full deterministic transition function of a <code>DoubleArrayTrie</code>: goto and failure
+ * are resolved ahead of time so that <code>nextState</code> is exactly one lookup per syllable,
+ * instead of following failure links in a loop.
+ * <p>
+ * A dense table over all syllable codes for every state would be far too big, so only the root
+ * has a dense row. Every other state stores, sorted by code, the transitions in which it differs
+ * from the root: its own goto transitions plus the row of its failure state. All of these lead to
+ * states of depth 2 or more, so none of them goes where the root goes; a code that is not in the
+ * row of a state goes where it goes from the root. A state with no goto transitions, such as the
+ * last state of most keywords, shares the row of its failure state instead of copying it.
+ * <p>
+ * The rows still grow with the length of the failure chains, so the table is several times the
+ * size of the <code>DoubleArrayTrie</code>, and with the binary searches of the longer rows it is
+ * not faster on the dictionaries at hand; <code>CompareAutomata</code> reports both.
+ * <p>
+ * States are the slots of the <code>DoubleArrayTrie</code>, and the keywords and output links are
+ * shared with it.
+ *
+ * @author Chris
+ */
+public class DfaTrie implements Automaton {
+
+	/** rows no longer than this are searched linearly */
+	private static final int LINEAR_SEARCH = 8;
+
+	/** the transitions from the root, indexed by code */
+	private int[] rootNext;
+
+	/** the row of a state is rowLabels[rowStart[s]] ... rowLabels[rowEnd[s] - 1], sorted */
+	private int[] rowStart;
+
+	private int[] rowEnd;
+
+	private int[] rowLabels;
+
+	private int[] rowTargets;
+
+	private int[] keyword;
+
+	private int[] output;
+
+	private int stateCount;
+
+	public DfaTrie(DoubleArrayTrie goTo) {
+		build(goTo);
+	}
+
+	@Override
+	public int nextState(int state, int code) {
+		int lo = rowStart[state];
+		int hi = rowEnd[state] - 1;
+
+		if (hi - lo < LINEAR_SEARCH) {
+			for (int i = lo; i <= hi; i++) {
+				if (rowLabels[i] == code) {
+					return rowTargets[i];
+				}
+			}
+		} else {
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int label = rowLabels[mid];
+
+				if (label < code) {
+					lo = mid + 1;
+				} else if (label > code) {
+					hi = mid - 1;
+				} else {
+					return rowTargets[mid];
+				}
+			}
+		}
+
+		return code < rootNext.length ? rootNext[code] : ROOT;
+	}
+
+	@Override
+	public int keyword(int state) {
+		return keyword[state];
+	}
+
+	@Override
+	public int output(int state) {
+		return output[state];
+	}
+
+	@Override
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return the number of transitions stored in the rows, not counting the root or the rows shared
+	 */
+	public int getTransitionCount() {
+		return rowLabels.length;
+	}
+
+	@Override
+	public long getSizeInBytes() {
+		return 4L * (rootNext.length + rowStart.length + rowEnd.length + rowLabels.length + rowTargets.length
+				+ keyword.length + output.length);
+	}
+
+	//=========== BUILDING
+
+	private void build(DoubleArrayTrie goTo) {
+		int size = goTo.getSize();
+
+		// the goto transitions grouped by parent; slots ascend so the labels of a parent do too
+		int[] childStart = new int[size + 1];
+		int maxCode = 0;
+
+		for (int slot = 1; slot < size; slot++) {
+			int parent = goTo.parent(slot);
+
+			if (parent >= 0) {
+				childStart[parent + 1]++;
+				maxCode = Math.max(maxCode, goTo.label(slot));
+			}
+		}
+
+		for (int slot = 0; slot < size; slot++) {
+			childStart[slot + 1] += childStart[slot];
+		}
+
+		int[] childLabels = new int[childStart[size]];
+		int[] childTargets = new int[childStart[size]];
+		int[] fill = Arrays.copyOf(childStart, size);
+
+		for (int slot = 1; slot < size; slot++) {
+			int parent = goTo.parent(slot);
+
+			if (parent >= 0) {
+				childLabels[fill[parent]] = goTo.label(slot);
+				childTargets[fill[parent]] = slot;
+				fill[parent]++;
+			}
+		}
+
+		rootNext = new int[maxCode + 1];
+
+		for (int i = childStart[ROOT]; i < childStart[ROOT + 1]; i++) {
+			rootNext[childLabels[i]] = childTargets[i];
+		}
+
+		// breadth first, so that the row of the failure state is done before the state itself
+		int[] queue = new int[childLabels.length + 1];
+		int head = 0;
+		int tail = 0;
+
+		queue[tail++] = ROOT;
+
+		rowStart = new int[size];
+		rowEnd = new int[size];
+		rowLabels = new int[Math.max(16, 2 * childLabels.length)];
+		rowTargets = new int[rowLabels.length];
+		int next = 0;
+
+		while (head < tail) {
+			int state = queue[head++];
+
+			for (int i = childStart[state]; i < childStart[state + 1]; i++) {
+				queue[tail++] = childTargets[i];
+			}
+
+			if (state == ROOT) {
+				continue;
+			}
+
+			int failure = goTo.failure(state);
+
+			// a state with no goto transitions goes everywhere its failure state goes: share its row
+			if (childStart[state] == childStart[state + 1] && failure != ROOT) {
+				rowStart[state] = rowStart[failure];
+				rowEnd[state] = rowEnd[failure];
+				continue;
+			}
+
+			// merge the goto transitions with the row of the failure state, goto wins
+			int a = childStart[state];
+			int aEnd = childStart[state + 1];
+			int b = failure == ROOT ? 0 : rowStart[failure];
+			int bEnd = failure == ROOT ? 0 : rowEnd[failure];
+
+			int needed = next + (aEnd - a) + (bEnd - b);
+			if (needed > rowLabels.length) {
+				int newLength = Math.max(needed, rowLabels.length + (rowLabels.length >> 1));
+
+				rowLabels = Arrays.copyOf(rowLabels, newLength);
+				rowTargets = Arrays.copyOf(rowTargets, newLength);
+			}
+
+			rowStart[state] = next;
+
+			while (a < aEnd || b < bEnd) {
+				if (b == bEnd || (a < aEnd && childLabels[a] <= rowLabels[b])) {
+					if (b < bEnd && childLabels[a] == rowLabels[b]) {
+						b++;
+					}
+
+					rowLabels[next] = childLabels[a];
+					rowTargets[next] = childTargets[a];
+					a++;
+				} else {
+					rowLabels[next] = rowLabels[b];
+					rowTargets[next] = rowTargets[b];
+					b++;
+				}
+
+				next++;
+			}
+
+			rowEnd[state] = next;
+		}
+
+		rowLabels = Arrays.copyOf(rowLabels, next);
+		rowTargets = Arrays.copyOf(rowTargets, next);
+
+		keyword = goTo.keywords();
+		output = goTo.outputs();
+		stateCount = goTo.getStateCount();
+	}
+}
@@ -0,0 +1,278 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current <code>Trie</code> of a dictionary file and replaces it when the file changes,
+ * without stopping the threads that tokenize with it.
+ * <p>
+ * The new trie is built on a background thread while the old one stays in use, then swapped in
+ * atomically. A trie is immutable, so a caller that took the trie with <code>get()</code> finishes
+ * with that version while later calls get the new one; a thread should take the trie once per
+ * text so that a text is not tokenized with two versions. If a build fails, the old trie stays.
+ * <p>
+ * The file is a list of keywords, one per line, or an image written by <code>CompileDict</code>.
+ * A file being written is not swapped in: <code>watch</code> waits until the modification time
+ * and length of the file are the same at two checks in a row, and a build fails if they change
+ * while the file is read. A writer that stops for longer than the period with the file half
+ * written cannot be told from one that is done, though, so a new dictionary should be written to
+ * another file and renamed over the old. An image is mapped while its trie is in use, so it must
+ * never be rewritten in place.
+ *
+ * @author Chris
+ */
+public class DictionaryHandle implements Closeable {
+
+	/**
+	 * A trie and what is known of how it was built.
+	 */
+	public static class Version {
+
+		private final Trie trie;
+
+		private final int version;
+
+		private final long buildMillis;
+
+		private final long loadedAt;
+
+		/** the modification time and length of the file the trie was built from */
+		private final long fileModified;
+
+		private final long fileLength;
+
+		Version(Trie trie, int version, long buildMillis, long fileModified, long fileLength) {
+			this.trie = trie;
+			this.version = version;
+			this.buildMillis = buildMillis;
+			this.loadedAt = System.currentTimeMillis();
+			this.fileModified = fileModified;
+			this.fileLength = fileLength;
+		}
+
+		public Trie getTrie() {
+			return trie;
+		}
+
+		/**
+		 * @return 1 for the trie built by the constructor of the handle, one more for each reload
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return the time taken to build or map the trie, in ms
+		 */
+		public long getBuildMillis() {
+			return buildMillis;
+		}
+
+		/**
+		 * @return when the trie was swapped in, as <code>System.currentTimeMillis()</code>
+		 */
+		public long getLoadedAt() {
+			return loadedAt;
+		}
+
+		public int getKeywordCount() {
+			return trie.getKeywordCount();
+		}
+
+		@Override
+		public String toString() {
+			return "version " + version + ", " + getKeywordCount() + " keywords, built in " + buildMillis + " ms";
+		}
+	}
+
+	private final File file;
+
+	private final TrieConfig trieConfig;
+
+	private final AtomicReference<Version> current = new AtomicReference<Version>();
+
+	/** a single thread, so that reloads are built one at a time and in order */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Builds the first version of the trie before returning.
+	 */
+	public DictionaryHandle(File file, TrieConfig trieConfig) throws IOException {
+		this.file = file;
+		this.trieConfig = trieConfig;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DictionaryHandle " + DictionaryHandle.this.file.getName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		this.current.set(build(1));
+	}
+
+	public DictionaryHandle(File file) throws IOException {
+		this(file, new TrieConfig());
+	}
+
+	/**
+	 * @return the current trie
+	 */
+	public Trie get() {
+		return current.get().getTrie();
+	}
+
+	/**
+	 * @return the current trie with its version, build time and keyword count
+	 */
+	public Version getVersion() {
+		return current.get();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Builds a new trie from the file in the background and swaps it in.
+	 *
+	 * @return the version swapped in; if the build fails, e.g. as the file changed while it was
+	 * read, <code>get()</code> throws its exception and the current trie is kept
+	 */
+	public Future<Version> reload() {
+		return executor.submit(new Callable<Version>() {
+			@Override
+			public Version call() throws IOException {
+				return swap();
+			}
+		});
+	}
+
+	/**
+	 * As <code>reload()</code>, but only if the modification time or length of the file differ from
+	 * those of the file the current trie was built from.
+	 *
+	 * @return the version that is current once the check is done
+	 */
+	public Future<Version> reloadIfModified() {
+		return executor.submit(new Callable<Version>() {
+			@Override
+			public Version call() throws IOException {
+				return isModified() ? swap() : current.get();
+			}
+		});
+	}
+
+	/**
+	 * Checks the file every <code>period</code> and reloads it when it has changed and has stayed
+	 * the same since the check before. A failed build is reported on <code>System.err</code> and
+	 * tried again at the next change of the file; this includes an <code>Error</code> such as
+	 * <code>OutOfMemoryError</code>, which would otherwise cancel the checks without a trace.
+	 */
+	public void watch(long period, TimeUnit unit) {
+		executor.scheduleWithFixedDelay(new Runnable() {
+			/** the modification time and length at the check before, to wait until a write is done */
+			private long seenModified = -1;
+
+			private long seenLength = -1;
+
+			/** those of the file whose build failed, so that it is not built again until it changes */
+			private long failedModified = -1;
+
+			private long failedLength = -1;
+
+			@Override
+			public void run() {
+				long modified = file.lastModified();
+				long length = file.length();
+				boolean settled = modified == seenModified && length == seenLength;
+
+				seenModified = modified;
+				seenLength = length;
+
+				if (! settled || ! isModified() || (modified == failedModified && length == failedLength)) {
+					return;
+				}
+
+				try {
+					Version version = swap();
+					System.err.println("Reloaded dictionary " + file + ": " + version);
+				} catch (Throwable ex) {
+					failedModified = modified;
+					failedLength = length;
+					System.err.println("Reloading dictionary " + file + " failed, keeping " + current.get());
+					ex.printStackTrace();
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops the background thread; the current trie remains usable.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private boolean isModified() {
+		Version version = current.get();
+
+		return file.lastModified() != version.fileModified || file.length() != version.fileLength;
+	}
+
+	/** only called on the executor thread, so versions are numbered in order */
+	private Version swap() throws IOException {
+		Version version = build(current.get().getVersion() + 1);
+
+		current.set(version);
+		return version;
+	}
+
+	private Version build(int version) throws IOException {
+		// taken before reading, so that a change made while building is seen by the next check
+		long fileModified = file.lastModified();
+		long fileLength = file.length();
+
+		long start = System.currentTimeMillis();
+		Trie trie;
+
+		if (DictionaryImage.isImage(file)) {
+			trie = DictionaryImage.load(file, trieConfig, true);
+		} else {
+			TrieBuilder builder = new TrieBuilder(trieConfig);
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String entryStr = null;
+				while ((entryStr = reader.readLine()) != null) {
+					builder.addKeyword(entryStr);
+				}
+			} finally {
+				reader.close();
+			}
+
+			trie = builder.build();
+		}
+
+		if (file.lastModified() != fileModified || file.length() != fileLength) {
+			throw new IOException(file + " changed while it was read");
+		}
+
+		return new Version(trie, version, System.currentTimeMillis() - start, fileModified, fileLength);
+	}
+
+}
@@ -0,0 +1,341 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A compiled <code>Trie</code> persisted as a binary file: the syllable table, the keywords
+ * with their sources and frequencies and the arrays of the <code>DoubleArrayTrie</code> with its failure and output links.
+ * <p>
+ * The image is loaded by memory-mapping it; the automaton reads its arrays straight from the
+ * mapping and keywords are decoded only when they are first emitted, so a worker can start
+ * tokenizing right away and JVMs on the same host share the pages.
+ * <p>
+ * Layout, little-endian:
+ * <pre>
+ *   int  magic 'TBWB', int version, long CRC32 of everything after the header
+ *   int  syllable count, keyword count, double-array size, state count, source count
+ *   int  syllable offsets[syllables + 1], keyword offsets[keywords + 1], keyword lengths[keywords]
+ *   int  keyword sources[keywords], keyword frequencies[keywords], source name offsets[sources + 1]
+ *   int  base[size], check[size], failure[size], keyword[size], output[size]
+ *   byte syllables (UTF-8), keywords (UTF-8), source names (UTF-8)
+ * </pre>
+ *
+ * @author Chris
+ */
+public class DictionaryImage {
+
+	public static final int MAGIC = 0x42574254;
+
+	public static final int VERSION = 3;
+
+	/** magic, version and checksum */
+	protected static final int HEADER_SIZE = 16;
+
+	/** the five counts after the header */
+	protected static final int COUNTS_SIZE = 20;
+
+	/**
+	 * Writes the image of a trie built by <code>TrieBuilder.build</code> to <code>file</code>.
+	 */
+	public static void write(Trie trie, File file) throws IOException {
+		DoubleArrayTrie doubleArray = trie.getDoubleArray();
+		SyllableTable syllables = trie.getSyllableTable();
+
+		int syllableCount = syllables.size();
+		int keywordCount = trie.getKeywordCount();
+		int size = doubleArray.getSize();
+
+		byte[][] syllableBytes = new byte[syllableCount][];
+		int syllableBlob = 0;
+
+		for (int i = 0; i < syllableCount; i++) {
+			syllableBytes[i] = syllables.get(i).getBytes(StandardCharsets.UTF_8);
+			syllableBlob += syllableBytes[i].length;
+		}
+
+		byte[][] keywordBytes = new byte[keywordCount][];
+		int keywordBlob = 0;
+
+		for (int i = 0; i < keywordCount; i++) {
+			keywordBytes[i] = trie.getKeywordText(i).getBytes(StandardCharsets.UTF_8);
+			keywordBlob += keywordBytes[i].length;
+		}
+
+		int sourceCount = trie.getSourceCount();
+		byte[][] sourceBytes = new byte[sourceCount][];
+		int sourceBlob = 0;
+
+		for (int i = 0; i < sourceCount; i++) {
+			sourceBytes[i] = trie.getSourceName(i).getBytes(StandardCharsets.UTF_8);
+			sourceBlob += sourceBytes[i].length;
+		}
+
+		int ints = (syllableCount + 1) + (keywordCount + 1) + 3 * keywordCount + (sourceCount + 1) + 5 * size;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + COUNTS_SIZE + 4 * ints + syllableBlob + keywordBlob + sourceBlob);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(0);
+
+		buffer.putInt(syllableCount);
+		buffer.putInt(keywordCount);
+		buffer.putInt(size);
+		buffer.putInt(doubleArray.getStateCount());
+		buffer.putInt(sourceCount);
+
+		putOffsets(buffer, syllableBytes);
+		putOffsets(buffer, keywordBytes);
+
+		for (int i = 0; i < keywordCount; i++) {
+			buffer.putInt(trie.getKeywordLength(i));
+		}
+
+		for (int i = 0; i < keywordCount; i++) {
+			buffer.putInt(trie.getKeywordSources(i));
+		}
+
+		for (int i = 0; i < keywordCount; i++) {
+			buffer.putInt(trie.getKeywordFrequency(i));
+		}
+
+		putOffsets(buffer, sourceBytes);
+
+		putInts(buffer, doubleArray.bases());
+		putInts(buffer, doubleArray.checks());
+		putInts(buffer, doubleArray.failures());
+		putInts(buffer, doubleArray.keywords());
+		putInts(buffer, doubleArray.outputs());
+
+		for (byte[] bytes : syllableBytes) {
+			buffer.put(bytes);
+		}
+
+		for (byte[] bytes : keywordBytes) {
+			buffer.put(bytes);
+		}
+
+		for (byte[] bytes : sourceBytes) {
+			buffer.put(bytes);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE);
+		buffer.putLong(8, crc.getValue());
+
+		buffer.flip();
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return true if the file starts with the magic number of an image
+	 */
+	public static boolean isImage(File file) {
+		if (file.length() < HEADER_SIZE + COUNTS_SIZE) {
+			return false;
+		}
+
+		try {
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				return Integer.reverseBytes(in.readInt()) == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	public static Trie load(File file) throws IOException {
+		return load(file, new TrieConfig(), true);
+	}
+
+	/**
+	 * Maps the image and returns a compiled <code>Trie</code> reading from it.
+	 *
+	 * @param verify whether to check the CRC32 of the image, which reads every page of it
+	 */
+	public static Trie load(File file, TrieConfig trieConfig, boolean verify) throws IOException {
+		MappedByteBuffer mapped;
+
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+		} finally {
+			in.close();
+		}
+
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.capacity() < HEADER_SIZE + COUNTS_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a dictionary image");
+		}
+
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " has image version " + buffer.getInt(4) + ", expected " + VERSION);
+		}
+
+		if (verify && checksum(buffer) != buffer.getLong(8)) {
+			throw new IOException(file + " is corrupt: checksum mismatch");
+		}
+
+		int syllableCount = buffer.getInt(HEADER_SIZE);
+		int keywordCount = buffer.getInt(HEADER_SIZE + 4);
+		int size = buffer.getInt(HEADER_SIZE + 8);
+		int stateCount = buffer.getInt(HEADER_SIZE + 12);
+		int sourceCount = buffer.getInt(HEADER_SIZE + 16);
+
+		int offset = HEADER_SIZE + COUNTS_SIZE;
+
+		IntBuffer syllableOffsets = ints(buffer, offset, syllableCount + 1);
+		offset += 4 * (syllableCount + 1);
+		IntBuffer keywordOffsets = ints(buffer, offset, keywordCount + 1);
+		offset += 4 * (keywordCount + 1);
+		IntBuffer keywordLengths = ints(buffer, offset, keywordCount);
+		offset += 4 * keywordCount;
+		IntBuffer keywordSources = ints(buffer, offset, keywordCount);
+		offset += 4 * keywordCount;
+		IntBuffer keywordFrequencies = ints(buffer, offset, keywordCount);
+		offset += 4 * keywordCount;
+		IntBuffer sourceOffsets = ints(buffer, offset, sourceCount + 1);
+		offset += 4 * (sourceCount + 1);
+
+		IntBuffer[] arrays = new IntBuffer[5];
+
+		for (int i = 0; i < arrays.length; i++) {
+			arrays[i] = ints(buffer, offset, size);
+			offset += 4 * size;
+		}
+
+		int syllableBlob = offset;
+		int keywordBlob = syllableBlob + syllableOffsets.get(syllableCount);
+		int sourceBlob = keywordBlob + keywordOffsets.get(keywordCount);
+
+		SyllableTable syllables = new SyllableTable();
+
+		for (int i = 0; i < syllableCount; i++) {
+			syllables.intern(string(buffer, syllableBlob, syllableOffsets.get(i), syllableOffsets.get(i + 1)));
+		}
+
+		syllables.freeze();
+
+		int[] lengths = new int[keywordCount];
+		keywordLengths.get(lengths);
+
+		int[] sources = new int[keywordCount];
+		keywordSources.get(sources);
+
+		int[] frequencies = new int[keywordCount];
+		keywordFrequencies.get(frequencies);
+
+		List<String> sourceNames = new ArrayList<String>(sourceCount);
+
+		for (int i = 0; i < sourceCount; i++) {
+			sourceNames.add(string(buffer, sourceBlob, sourceOffsets.get(i), sourceOffsets.get(i + 1)));
+		}
+
+		Automaton automaton = new MappedDoubleArrayTrie(arrays[0], arrays[1], arrays[2], arrays[3], arrays[4], stateCount);
+
+		return new Trie(trieConfig, syllables, new MappedKeywords(buffer, keywordBlob, keywordOffsets), lengths, sources, sourceNames, frequencies, null, null, automaton, null);
+	}
+
+	/**
+	 * The keywords of an image, decoded from the mapping on each <code>get</code>.
+	 */
+	protected static class MappedKeywords extends AbstractList<String> {
+
+		private final ByteBuffer buffer;
+
+		private final int blob;
+
+		private final IntBuffer offsets;
+
+		public MappedKeywords(ByteBuffer buffer, int blob, IntBuffer offsets) {
+			this.buffer = buffer;
+			this.blob = blob;
+			this.offsets = offsets;
+		}
+
+		@Override
+		public String get(int index) {
+			return string(buffer, blob, offsets.get(index), offsets.get(index + 1));
+		}
+
+		@Override
+		public int size() {
+			return offsets.limit() - 1;
+		}
+	}
+
+	//=========== UTILITIES
+
+	protected static long checksum(ByteBuffer buffer) {
+		ByteBuffer content = buffer.duplicate();
+		content.position(HEADER_SIZE);
+
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		return crc.getValue();
+	}
+
+	protected static IntBuffer ints(ByteBuffer buffer, int offset, int count) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.limit(offset + 4 * count);
+
+		return slice.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	protected static String string(ByteBuffer buffer, int blob, int start, int end) {
+		byte[] bytes = new byte[end - start];
+
+		ByteBuffer content = buffer.duplicate();
+		content.position(blob + start);
+		content.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	protected static void putOffsets(ByteBuffer buffer, byte[][] strings) {
+		int offset = 0;
+
+		buffer.putInt(offset);
+
+		for (byte[] bytes : strings) {
+			offset += bytes.length;
+			buffer.putInt(offset);
+		}
+	}
+
+	protected static void putInts(ByteBuffer buffer, int[] ints) {
+		for (int value : ints) {
+			buffer.putInt(value);
+		}
+	}
+
+}
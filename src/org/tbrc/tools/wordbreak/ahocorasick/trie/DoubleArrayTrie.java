@@ -0,0 +1,296 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A frozen, array based form of the <code>State</code> graph of a <code>Trie</code>.
+ * <p>
+ * The goto function is stored as a double-array: each state is a slot and the transition
+ * from slot <code>s</code> on syllable code <code>c</code> leads to slot <code>base[s] + c</code>
+ * provided <code>check[base[s] + c] == s</code>. Failure links, keywords and output links are
+ * stored in parallel <code>int</code> arrays indexed by slot, so that following the automaton while parsing is only
+ * array lookups.
+ * <p>
+ * The code of a syllable is its <code>SyllableTable</code> ID plus one. Code 0 is reserved for
+ * syllables that do not occur in the dictionary at all; from any state such a syllable leads
+ * back to the root.
+ *
+ * @author Chris
+ */
+public class DoubleArrayTrie implements Automaton {
+
+	private int[] base;
+
+	private int[] check;
+
+	private int[] failure;
+
+	/** the keyword ID ending in each slot, -1 if none */
+	private int[] keyword;
+
+	private int[] output;
+
+	private int stateCount = 0;
+
+	/** how many free slots a search may pass over before later searches skip them */
+	private static final int MAX_REJECTED = 64;
+
+	/** where the search for a free base starts while building */
+	private int nextCheckPos;
+
+	/**
+	 * Builds the double-array from the states below <code>rootState</code>. The failure states
+	 * must already have been constructed.
+	 */
+	public DoubleArrayTrie(State rootState) {
+		build(rootState);
+	}
+
+	@Override
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	public int getSize() {
+		return check.length;
+	}
+
+	@Override
+	public long getSizeInBytes() {
+		return 4L * (base.length + check.length + failure.length + keyword.length + output.length);
+	}
+
+	/**
+	 * @return the code of the syllable with the given ID, <code>UNKNOWN</code> for <code>SyllableTable.NONE</code>
+	 */
+	public static int code(int yiGe) {
+		return yiGe + 1;
+	}
+
+	/**
+	 * Follows the goto function and, when it fails, the failure links until a transition on
+	 * <code>code</code> is found. The root never fails.
+	 */
+	@Override
+	public int nextState(int state, int code) {
+		while (true) {
+			if (code != UNKNOWN) {
+				int next = base[state] + code;
+
+				if (next < check.length && check[next] == state) {
+					return next;
+				}
+			}
+
+			if (state == ROOT) {
+				return ROOT;
+			}
+
+			state = failure[state];
+		}
+	}
+
+	@Override
+	public int keyword(int state) {
+		return keyword[state];
+	}
+
+	@Override
+	public int output(int state) {
+		return output[state];
+	}
+
+	/**
+	 * @return the slot of the parent of <code>slot</code>, -1 if the slot is not a state
+	 */
+	int parent(int slot) {
+		return check[slot];
+	}
+
+	/**
+	 * @return the code of the transition from the parent of <code>slot</code> to it
+	 */
+	int label(int slot) {
+		return slot - base[check[slot]];
+	}
+
+	int failure(int slot) {
+		return failure[slot];
+	}
+
+	int[] bases() {
+		return base;
+	}
+
+	int[] checks() {
+		return check;
+	}
+
+	int[] failures() {
+		return failure;
+	}
+
+	int[] keywords() {
+		return keyword;
+	}
+
+	int[] outputs() {
+		return output;
+	}
+
+	//=========== BUILDING
+
+	private void build(State rootState) {
+		Map<State, Integer> slots = new IdentityHashMap<State, Integer>();
+		List<State> states = new ArrayList<State>();
+		BitSet used = new BitSet();
+
+		int size = 1;
+		base = new int[1024];
+		check = new int[1024];
+		Arrays.fill(check, -1);
+
+		used.set(ROOT);
+		slots.put(rootState, ROOT);
+
+		Queue<State> queue = new LinkedList<State>();
+		queue.add(rootState);
+
+		nextCheckPos = 1;
+
+		while (! queue.isEmpty()) {
+			State state = queue.remove();
+			int slot = slots.get(state);
+
+			states.add(state);
+
+			int[] labels = state.getTransitions();
+			State[] targets = new State[labels.length];
+			int count = labels.length;
+
+			for (int i = 0; i < count; i++) {
+				targets[i] = state.nextStateIgnoreRootState(labels[i]);
+				labels[i] = code(labels[i]);
+			}
+
+			if (count == 0) {
+				continue;
+			}
+
+			sort(labels, targets, count);
+
+			int b = findBase(used, labels, count);
+
+			int maxSlot = b + labels[count - 1];
+			if (maxSlot >= base.length) {
+				grow(Math.max(maxSlot + 1, base.length * 2));
+			}
+			size = Math.max(size, maxSlot + 1);
+
+			base[slot] = b;
+
+			for (int i = 0; i < count; i++) {
+				int child = b + labels[i];
+
+				used.set(child);
+				check[child] = slot;
+				slots.put(targets[i], child);
+				queue.add(targets[i]);
+			}
+		}
+
+		base = Arrays.copyOf(base, size);
+		check = Arrays.copyOf(check, size);
+		failure = new int[size];
+		keyword = new int[size];
+		output = new int[size];
+		stateCount = states.size();
+
+		Arrays.fill(keyword, -1);
+		Arrays.fill(output, NONE);
+
+		for (State state : states) {
+			int slot = slots.get(state);
+
+			if (state.failure() != null) {
+				failure[slot] = slots.get(state.failure());
+			}
+
+			if (state.output() != null) {
+				output[slot] = slots.get(state.output());
+			}
+
+			keyword[slot] = state.getKeyword();
+		}
+	}
+
+	/**
+	 * First fit: the lowest base at which every child slot is still free. A state with a single
+	 * child fits in any free slot; for the others, as in darts, the search starts at
+	 * <code>nextCheckPos</code> which moves past regions where too many free slots were rejected.
+	 */
+	private int findBase(BitSet used, int[] labels, int count) {
+		if (count == 1) {
+			return used.nextClearBit(labels[0] + 1) - labels[0];
+		}
+
+		int slot = used.nextClearBit(Math.max(nextCheckPos, labels[0] + 1));
+		int rejected = 0;
+
+		while (true) {
+			int b = slot - labels[0];
+			boolean fits = true;
+
+			for (int i = 1; i < count; i++) {
+				if (used.get(b + labels[i])) {
+					fits = false;
+					break;
+				}
+			}
+
+			if (fits) {
+				if (rejected > MAX_REJECTED) {
+					nextCheckPos = slot;
+				}
+
+				return b;
+			}
+
+			rejected++;
+			slot = used.nextClearBit(slot + 1);
+		}
+	}
+
+	private void grow(int newSize) {
+		int oldSize = check.length;
+
+		base = Arrays.copyOf(base, newSize);
+		check = Arrays.copyOf(check, newSize);
+		Arrays.fill(check, oldSize, newSize, -1);
+	}
+
+	/** sorts the labels, carrying the targets along */
+	private static void sort(int[] labels, State[] targets, int count) {
+		long[] packed = new long[count];
+
+		for (int i = 0; i < count; i++) {
+			packed[i] = ((long) labels[i] << 32) | i;
+		}
+
+		Arrays.sort(packed);
+
+		State[] tmp = Arrays.copyOf(targets, count);
+
+		for (int i = 0; i < count; i++) {
+			labels[i] = (int) (packed[i] >>> 32);
+			targets[i] = tmp[(int) packed[i]];
+		}
+	}
+}
@@ -6,17 +6,50 @@ import org.tbrc.tools.wordbreak.ahocorasick.interval.Intervalable;
 
 public class Emit extends Interval implements Intervalable {
 
+    private final int keywordId;
+
     private final YiGeSeq keyword;
 
+    private final int sources;
+
     public Emit(final int start, final int end, final YiGeSeq keyword) {
+        this(start, end, -1, keyword);
+    }
+
+    public Emit(final int start, final int end, final int keywordId, final YiGeSeq keyword) {
+        this(start, end, keywordId, keyword, 0);
+    }
+
+    public Emit(final int start, final int end, final int keywordId, final YiGeSeq keyword, final int sources) {
         super(start, end);
+        this.keywordId = keywordId;
         this.keyword = keyword;
+        this.sources = sources;
+    }
+
+    /**
+     * @return the ID of the keyword in the <code>Trie</code> that emitted it, -1 if not known
+     */
+    public int getKeywordId() {
+        return this.keywordId;
     }
 
     public YiGeSeq getKeyword() {
         return this.keyword;
     }
 
+    /**
+     * @return a bit for each dictionary of the <code>Trie</code> the keyword came from,
+     * <code>1 << sourceId</code>
+     */
+    public int getSources() {
+        return this.sources;
+    }
+
+    public boolean isFromSource(int sourceId) {
+        return (this.sources & 1 << sourceId) != 0;
+    }
+
     @Override
     public String toString() {
         return super.toString() + "=" + this.keyword;
@@ -0,0 +1,105 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+import org.tbrc.tools.wordbreak.ahocorasick.interval.OverlapResolver;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.ViterbiSegmenter;
+
+/**
+ * The emits of a clause as parallel <code>int</code> arrays of start, end and keyword ID, in
+ * place of a <code>List&lt;Emit&gt;</code>. The buffer is kept in the <code>ParseContext</code>
+ * and cleared for each clause, so once it has grown to the longest clause, parsing allocates
+ * nothing.
+ *
+ * @author Chris
+ */
+public class EmitBuffer {
+
+	private int[] start = new int[64];
+
+	private int[] end = new int[64];
+
+	private int[] keywordId = new int[64];
+
+	private int size = 0;
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(int start, int end, int keywordId) {
+		if (size == this.start.length) {
+			int newLength = 2 * size;
+
+			this.start = Arrays.copyOf(this.start, newLength);
+			this.end = Arrays.copyOf(this.end, newLength);
+			this.keywordId = Arrays.copyOf(this.keywordId, newLength);
+		}
+
+		this.start[size] = start;
+		this.end[size] = end;
+		this.keywordId[size] = keywordId;
+		size++;
+	}
+
+	/**
+	 * @return the position of the first yi ge of emit <code>i</code>
+	 */
+	public int getStart(int i) {
+		return start[i];
+	}
+
+	/**
+	 * @return the position of the last yi ge of emit <code>i</code>
+	 */
+	public int getEnd(int i) {
+		return end[i];
+	}
+
+	public int getKeywordId(int i) {
+		return keywordId[i];
+	}
+
+	/**
+	 * Reverses the order of the emits from <code>from</code> on.
+	 */
+	void reverse(int from) {
+		for (int i = from, j = size - 1; i < j; i++, j--) {
+			int tmp = start[i];
+			start[i] = start[j];
+			start[j] = tmp;
+
+			tmp = end[i];
+			end[i] = end[j];
+			end[j] = tmp;
+
+			tmp = keywordId[i];
+			keywordId[i] = keywordId[j];
+			keywordId[j] = tmp;
+		}
+	}
+
+	/**
+	 * Removes the overlapping emits, in place; the emits must be in order of end position.
+	 */
+	public void removeOverlaps(OverlapResolver resolver) {
+		size = resolver.removeOverlaps(start, end, keywordId, size);
+	}
+
+	/**
+	 * Keeps the emits of the segmentation of least cost, in place; the emits must be in order of
+	 * end position.
+	 *
+	 * @param length the number of yi ge of the clause
+	 * @param costs the cost of each keyword, indexed by keyword ID
+	 * @param gapCost the cost of a yi ge left out of every emit
+	 */
+	public void segment(ViterbiSegmenter segmenter, int length, double[] costs, double gapCost) {
+		size = segmenter.segment(start, end, keywordId, size, length, costs, gapCost);
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import org.tbrc.tools.wordbreak.utils.SpaceSavingCounter;
+
+/**
+ * Counts the runs of 1 to <code>MAX_N</code> yi ge inside the fragments of a corpus, the text the
+ * dictionary does not cover, to find the words it lacks. Each n has a
+ * <code>SpaceSavingCounter</code> of its own, so that the single yi ge, far more frequent, do not
+ * crowd out the longer runs; the memory is bounded whatever the size of the corpus, and the
+ * fragments are never kept.
+ * <p>
+ * The n-grams are taken from the text of each fragment as given to a <code>TokenSink</code>, the
+ * yi ge with the tsheg and anything else between them. Collectors filled by several threads are
+ * merged with <code>addAll</code>.
+ *
+ * @author Chris
+ */
+public class FragmentNgrams {
+
+	public static final int MAX_N = 4;
+
+	/** the longest n-gram counted, in characters */
+	public static final int MAX_LENGTH = 64;
+
+	private final SpaceSavingCounter[] counters = new SpaceSavingCounter[MAX_N];
+
+	/** the starts of the last MAX_N yi ge, in a ring */
+	private final int[] starts = new int[MAX_N];
+
+	/**
+	 * @param capacity the number of n-grams counted for each n
+	 */
+	public FragmentNgrams(int capacity) {
+		for (int n = 1; n <= MAX_N; n++) {
+			counters[n - 1] = new SpaceSavingCounter(capacity, MAX_LENGTH);
+		}
+	}
+
+	/**
+	 * Counts the n-grams of the fragment <code>text[start, end)</code>.
+	 */
+	public void add(CharSequence text, int start, int end) {
+		int count = 0;
+		int pos = start;
+
+		while (true) {
+			while (pos < end && ! SyllableScanner.isLetter(text.charAt(pos))) {
+				pos++;
+			}
+
+			if (pos == end) {
+				return;
+			}
+
+			int yiGeStart = pos;
+
+			while (pos < end && SyllableScanner.isLetter(text.charAt(pos))) {
+				pos++;
+			}
+
+			starts[count % MAX_N] = yiGeStart;
+			count++;
+
+			// the n-grams that end with this yi ge
+			for (int n = 1; n <= Math.min(count, MAX_N); n++) {
+				counters[n - 1].add(text, starts[(count - n) % MAX_N], pos);
+			}
+		}
+	}
+
+	public void addAll(FragmentNgrams other) {
+		for (int n = 1; n <= MAX_N; n++) {
+			counters[n - 1].addAll(other.counters[n - 1]);
+		}
+	}
+
+	/**
+	 * @return the counter of the n-grams of <code>n</code> yi ge
+	 */
+	public SpaceSavingCounter getCounter(int n) {
+		return counters[n - 1];
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * Transitions in an open addressing hash table of <code>int</code> keys with linear probing,
+ * for the states with many transitions, the root above all. No boxing, unlike a
+ * <code>HashMap&lt;Integer, State&gt;</code>.
+ *
+ * @author Chris
+ */
+public class HashTransitions implements Transitions {
+
+    /** yi ge IDs are never negative */
+    private static final int FREE = -1;
+
+    private int[] keys;
+
+    private State[] values;
+
+    private int size = 0;
+
+    /**
+     * @param expected the number of transitions expected, the table grows as needed
+     */
+    public HashTransitions(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * expected - 1)) << 1;
+
+        keys = new int[capacity];
+        values = new State[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    @Override
+    public State get(int yiGe) {
+        int mask = keys.length - 1;
+        int slot = SyllableTable.mix(yiGe) & mask;
+
+        while (true) {
+            int key = keys[slot];
+
+            if (key == yiGe) {
+                return values[slot];
+            }
+
+            if (key == FREE) {
+                return null;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public Transitions put(int yiGe, State state) {
+        if (2 * (size + 1) > keys.length) {
+            rehash(2 * keys.length);
+        }
+
+        int mask = keys.length - 1;
+        int slot = SyllableTable.mix(yiGe) & mask;
+
+        while (keys[slot] != FREE && keys[slot] != yiGe) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == FREE) {
+            size++;
+        }
+
+        keys[slot] = yiGe;
+        values[slot] = state;
+
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int[] getLabels() {
+        int[] labels = new int[size];
+        int n = 0;
+
+        for (int key : keys) {
+            if (key != FREE) {
+                labels[n++] = key;
+            }
+        }
+
+        return labels;
+    }
+
+    @Override
+    public State[] getTargets() {
+        State[] targets = new State[size];
+        int n = 0;
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                targets[n++] = values[slot];
+            }
+        }
+
+        return targets;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        State[] oldValues = values;
+
+        keys = new int[capacity];
+        values = new State[capacity];
+        Arrays.fill(keys, FREE);
+        size = 0;
+
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+}
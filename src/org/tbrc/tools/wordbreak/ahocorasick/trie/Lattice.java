@@ -0,0 +1,520 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * The segmentations of a clause as a directed acyclic graph over its yi ge positions: node
+ * <code>p</code> is the boundary before yi ge <code>p</code>, and there is an edge for every
+ * emit, overlapping or not, and for every single yi ge left out of the keywords. Each path from
+ * node 0 to node <code>getLength()</code> is one segmentation, its cost the sum of the costs
+ * of its edges, as weighted by <code>ViterbiSegmenter</code>.
+ * <p>
+ * The edges are stored by the node they lead to, those of each node in
+ * <code>getFirstEdge(node) ... getFirstEdge(node + 1) - 1</code>; the lattice is built by
+ * <code>Trie.lattice</code> into the <code>ParseContext</code> and reused for the next clause,
+ * so it is valid until the next call.
+ * <p>
+ * <code>bestPaths(k)</code> finds the <code>k</code> segmentations of least cost. A span can be
+ * crossed by a keyword or by its yi ge left out, so several paths may put the token boundaries
+ * at the same nodes; they are one segmentation, and only the cheapest is kept. To that end the
+ * <code>k</code> best paths with distinct boundaries are kept for each node in turn, apart for
+ * those whose last edge is a yi ge left out, as a yi ge left out after them extends their fragment.
+ *
+ * @author Chris
+ */
+public class Lattice {
+
+	/** the number of yi ge; the nodes are 0 ... length */
+	private int length = 0;
+
+	private int[] starts;
+
+	private int[] ends;
+
+	/** the incoming edges of node v are firstEdge[v] ... firstEdge[v + 1] - 1 */
+	private int[] firstEdge = new int[65];
+
+	private int[] edgeFrom = new int[128];
+
+	/** the keyword of each edge, -1 for a yi ge left out */
+	private int[] edgeKeyword = new int[128];
+
+	private double[] edgeCost = new double[128];
+
+	private int edgeCount = 0;
+
+	//=========== K BEST
+
+	/** the number of paths kept per node and kind of last edge */
+	private int k = 0;
+
+	/**
+	 * the best paths to node v are at v * 2k + s: those whose last edge is a yi ge left out at
+	 * s in 0 ... gapCount[v] - 1, the others at s in k ... k + matchCount[v] - 1, each in order of cost
+	 */
+	private int[] gapCount = new int[65];
+
+	private int[] matchCount = new int[65];
+
+	/** the cost, last edge and slot at that edge's origin of each path */
+	private double[] nodeCost = new double[130];
+
+	private int[] nodeEdge = new int[130];
+
+	private int[] nodeSlot = new int[130];
+
+	/** a hash of the token boundaries of each path, to tell paths that split the yi ge alike */
+	private long[] nodeHash = new long[130];
+
+	/** the next path of each incoming edge and kind of origin, while merging */
+	private int[] next = new int[32];
+
+	/** the slots of the best paths at the last node */
+	private int[] finalSlots = new int[1];
+
+	/** the edges of the best paths from node 0, path r in pathEdges[pathStart[r], pathStart[r + 1]) */
+	private int[] pathEdges = new int[64];
+
+	private int[] pathStart = new int[2];
+
+	private int paths = 0;
+
+	/**
+	 * Builds the lattice of the emits of a clause, in order of end position.
+	 */
+	void reset(EmitBuffer emits, int length, int[] starts, int[] ends, double[] costs, double gapCost) {
+		this.length = length;
+		this.starts = starts;
+		this.ends = ends;
+		this.edgeCount = 0;
+		this.paths = 0;
+
+		if (firstEdge.length < length + 2) {
+			firstEdge = new int[Math.max(length + 2, 2 * firstEdge.length)];
+		}
+
+		int i = 0;
+
+		for (int p = 0; p < length; p++) {
+			firstEdge[p + 1] = edgeCount;
+
+			for (; i < emits.size() && emits.getEnd(i) == p; i++) {
+				int keywordId = emits.getKeywordId(i);
+
+				addEdge(emits.getStart(i), keywordId, costs[keywordId]);
+			}
+
+			// after the emits, so that of paths of equal cost the one through a keyword comes first
+			addEdge(p, -1, gapCost);
+		}
+
+		firstEdge[0] = 0;
+		firstEdge[length + 1] = edgeCount;
+	}
+
+	private void addEdge(int from, int keywordId, double cost) {
+		if (edgeCount == edgeFrom.length) {
+			int newLength = 2 * edgeCount;
+
+			edgeFrom = Arrays.copyOf(edgeFrom, newLength);
+			edgeKeyword = Arrays.copyOf(edgeKeyword, newLength);
+			edgeCost = Arrays.copyOf(edgeCost, newLength);
+		}
+
+		edgeFrom[edgeCount] = from;
+		edgeKeyword[edgeCount] = keywordId;
+		edgeCost[edgeCount] = cost;
+		edgeCount++;
+	}
+
+	/**
+	 * @return the number of yi ge, the last node
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @return the first incoming edge of the node; <code>getFirstEdge(getLength() + 1)</code> is the edge count
+	 */
+	public int getFirstEdge(int node) {
+		return firstEdge[node];
+	}
+
+	public int getEdgeFrom(int edge) {
+		return edgeFrom[edge];
+	}
+
+	public int getEdgeTo(int edge) {
+		// the edges of the last yi ge lead to the last node
+		int lo = 1;
+		int hi = length;
+
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+
+			if (firstEdge[mid] <= edge) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+
+		return lo;
+	}
+
+	/**
+	 * @return the keyword of the edge, -1 if it is a yi ge left out
+	 */
+	public int getKeywordId(int edge) {
+		return edgeKeyword[edge];
+	}
+
+	public double getCost(int edge) {
+		return edgeCost[edge];
+	}
+
+	/**
+	 * @return the offset in the text of the first character of yi ge <code>position</code>
+	 */
+	public int getStartOffset(int position) {
+		return starts[position];
+	}
+
+	/**
+	 * @return the offset in the text after the last character of yi ge <code>position</code>
+	 */
+	public int getEndOffset(int position) {
+		return ends[position];
+	}
+
+	/**
+	 * Finds the <code>k</code> segmentations of least cost, or all of them if there are fewer.
+	 * Paths that put the token boundaries at the same yi ge are one segmentation, e.g., a keyword
+	 * and the same yi ge left out, and only the cheapest of them is kept.
+	 *
+	 * @return the number of paths found
+	 */
+	public int bestPaths(int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be at least 1");
+		}
+
+		this.k = k;
+		ensureCapacity(k);
+
+		// the empty path counts as ending in a keyword: a yi ge left out after it starts a fragment
+		gapCount[0] = 0;
+		matchCount[0] = 1;
+		nodeCost[k] = 0;
+		nodeEdge[k] = -1;
+		nodeSlot[k] = 0;
+		nodeHash[k] = 0;
+
+		for (int v = 1; v <= length; v++) {
+			int last = firstEdge[v + 1];
+
+			if (next.length < 2 * (last - firstEdge[v])) {
+				next = new int[Math.max(2 * (last - firstEdge[v]), 2 * next.length)];
+			}
+
+			gapCount[v] = merge(v, true);
+			matchCount[v] = merge(v, false);
+		}
+
+		collectPaths();
+
+		return paths;
+	}
+
+	/**
+	 * Merges the lists of the origins of the incoming edges of <code>v</code> that are yi ge left
+	 * out, or of those that are keywords, into the <code>k</code> best paths with distinct boundaries.
+	 *
+	 * @return the number of paths kept
+	 */
+	private int merge(int v, boolean gap) {
+		int first = firstEdge[v];
+		int last = firstEdge[v + 1];
+		int base = v * 2 * k + (gap ? 0 : k);
+		int count = 0;
+
+		Arrays.fill(next, 0, 2 * (last - first), 0);
+
+		while (count < k) {
+			int best = -1;
+			double bestCost = 0;
+
+			// of paths of equal cost, the one through an earlier edge, then through a keyword, comes first
+			for (int i = 0; i < 2 * (last - first); i++) {
+				int e = first + (i >> 1);
+
+				if ((edgeKeyword[e] < 0) != gap) {
+					continue;
+				}
+
+				int u = edgeFrom[e];
+				int r = next[i];
+				boolean fromGap = (i & 1) != 0;
+
+				if (r < (fromGap ? gapCount[u] : matchCount[u])) {
+					double cost = nodeCost[u * 2 * k + (fromGap ? 0 : k) + r] + edgeCost[e];
+
+					if (best < 0 || cost < bestCost) {
+						best = i;
+						bestCost = cost;
+					}
+				}
+			}
+
+			if (best < 0) {
+				break;
+			}
+
+			int e = first + (best >> 1);
+			int u = edgeFrom[e];
+			int originSlot = ((best & 1) != 0 ? 0 : k) + next[best]++;
+			int slot = base + count;
+
+			nodeCost[slot] = bestCost;
+			nodeEdge[slot] = e;
+			nodeSlot[slot] = originSlot;
+			nodeHash[slot] = nodeHash[u * 2 * k + originSlot] + (isBoundary(e, originSlot) ? mix(u) : 0);
+
+			if (! repeats(v, base, count, slot)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return true if a token ends at the origin of <code>edge</code>, for the path there in <code>originSlot</code>
+	 */
+	private boolean isBoundary(int edge, int originSlot) {
+		// two yi ge left out in a row are one fragment
+		return edgeFrom[edge] > 0 && ! (edgeKeyword[edge] < 0 && originSlot < k);
+	}
+
+	private static long mix(long position) {
+		long h = (position + 1) * 0x9E3779B97F4A7C15L;
+
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * @return true if one of the <code>count</code> paths to <code>v</code> from <code>base</code>
+	 * has the same boundaries as the path in <code>slot</code>
+	 */
+	private boolean repeats(int v, int base, int count, int slot) {
+		for (int s = base; s < base + count; s++) {
+			if (nodeHash[s] == nodeHash[slot] && sameBoundaries(v, s - v * 2 * k, slot - v * 2 * k)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true if the path in <code>slot</code> of the last node has the same boundaries as
+	 * one of the paths found before it
+	 */
+	private boolean repeatsFinal(int slot) {
+		long hash = nodeHash[length * 2 * k + slot];
+
+		for (int r = 0; r < paths; r++) {
+			if (nodeHash[length * 2 * k + finalSlots[r]] == hash && sameBoundaries(length, finalSlots[r], slot)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true if the paths in slots <code>a</code> and <code>b</code> of node <code>v</code>
+	 * have their token boundaries at the same nodes
+	 */
+	private boolean sameBoundaries(int v, int a, int b) {
+		int va = v;
+		int vb = v;
+
+		// back to the previous boundary of each in turn, or to node 0
+		do {
+			boolean boundary;
+
+			do {
+				int edge = nodeEdge[va * 2 * k + a];
+
+				a = nodeSlot[va * 2 * k + a];
+				va = edgeFrom[edge];
+				boundary = isBoundary(edge, a);
+			} while (va > 0 && ! boundary);
+
+			do {
+				int edge = nodeEdge[vb * 2 * k + b];
+
+				b = nodeSlot[vb * 2 * k + b];
+				vb = edgeFrom[edge];
+				boundary = isBoundary(edge, b);
+			} while (vb > 0 && ! boundary);
+		} while (va == vb && va > 0);
+
+		return va == vb;
+	}
+
+	private void collectPaths() {
+		int w = 2 * k;
+		int gaps = length == 0 ? 0 : gapCount[length];
+		int matches = length == 0 ? 0 : matchCount[length];
+		int g = 0;
+		int m = 0;
+
+		if (finalSlots.length < k) {
+			finalSlots = new int[k];
+		}
+
+		// merge the two lists of the last node, the path through a keyword first at equal cost
+		paths = 0;
+
+		while (paths < k && (g < gaps || m < matches)) {
+			int slot;
+
+			if (g == gaps || (m < matches && nodeCost[length * w + k + m] <= nodeCost[length * w + g])) {
+				slot = k + m++;
+			} else {
+				slot = g++;
+			}
+
+			finalSlots[paths] = slot;
+
+			if (! repeatsFinal(slot)) {
+				paths++;
+			}
+		}
+
+		if (pathStart.length < paths + 1) {
+			pathStart = new int[paths + 1];
+		}
+
+		int size = 0;
+
+		for (int r = 0; r < paths; r++) {
+			pathStart[r] = size;
+
+			// back from the last node, then reversed
+			int v = length;
+			int slot = finalSlots[r];
+
+			while (v > 0) {
+				int edge = nodeEdge[v * w + slot];
+
+				if (size == pathEdges.length) {
+					pathEdges = Arrays.copyOf(pathEdges, 2 * size);
+				}
+
+				pathEdges[size++] = edge;
+				slot = nodeSlot[v * w + slot];
+				v = edgeFrom[edge];
+			}
+
+			for (int i = pathStart[r], j = size - 1; i < j; i++, j--) {
+				int tmp = pathEdges[i];
+				pathEdges[i] = pathEdges[j];
+				pathEdges[j] = tmp;
+			}
+		}
+
+		pathStart[paths] = size;
+	}
+
+	private void ensureCapacity(int k) {
+		int slots = (length + 1) * 2 * k;
+
+		if (gapCount.length < length + 1) {
+			gapCount = new int[Math.max(length + 1, 2 * gapCount.length)];
+			matchCount = new int[gapCount.length];
+		}
+
+		if (nodeCost.length < slots) {
+			int newLength = Math.max(slots, 2 * nodeCost.length);
+
+			nodeCost = new double[newLength];
+			nodeEdge = new int[newLength];
+			nodeSlot = new int[newLength];
+			nodeHash = new long[newLength];
+		}
+	}
+
+	/**
+	 * @return the number of paths found by the last <code>bestPaths</code>
+	 */
+	public int getPathCount() {
+		return paths;
+	}
+
+	/**
+	 * @return the cost of path <code>r</code>; the paths are in order of cost
+	 */
+	public double getPathCost(int r) {
+		return nodeCost[length * 2 * k + finalSlots[r]];
+	}
+
+	/**
+	 * @return the number of edges of path <code>r</code>
+	 */
+	public int getPathSize(int r) {
+		return pathStart[r + 1] - pathStart[r];
+	}
+
+	/**
+	 * @return edge <code>i</code> of path <code>r</code>, from node 0
+	 */
+	public int getPathEdge(int r, int i) {
+		return pathEdges[pathStart[r] + i];
+	}
+
+	/**
+	 * Sends path <code>r</code> to <code>sink</code> as <code>Trie.tokenize</code> would: a match for
+	 * each keyword and a fragment for each run of yi ge left out.
+	 */
+	public void tokenize(int r, TokenSink sink) {
+		int fragmentStart = -1;
+
+		for (int i = pathStart[r]; i < pathStart[r + 1]; i++) {
+			int edge = pathEdges[i];
+			int from = edgeFrom[edge];
+
+			if (edgeKeyword[edge] < 0) {
+				if (fragmentStart < 0) {
+					fragmentStart = from;
+				}
+
+				continue;
+			}
+
+			if (fragmentStart >= 0) {
+				sink.token(TokenSink.FRAGMENT, starts[fragmentStart], ends[from - 1], -1);
+				fragmentStart = -1;
+			}
+
+			int to = i + 1 < pathStart[r + 1] ? edgeFrom[pathEdges[i + 1]] : length;
+
+			sink.token(TokenSink.MATCH, starts[from], ends[to - 1], edgeKeyword[edge]);
+		}
+
+		if (fragmentStart >= 0) {
+			sink.token(TokenSink.FRAGMENT, starts[fragmentStart], ends[length - 1], -1);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.nio.IntBuffer;
+
+/**
+ * A <code>DoubleArrayTrie</code> whose arrays are views of a memory-mapped
+ * <code>DictionaryImage</code>. Nothing is copied onto the heap, so loading is immediate and
+ * several JVMs mapping the same image share it in the page cache.
+ *
+ * @author Chris
+ */
+public class MappedDoubleArrayTrie implements Automaton {
+
+	private final IntBuffer base;
+
+	private final IntBuffer check;
+
+	private final IntBuffer failure;
+
+	private final IntBuffer keyword;
+
+	private final IntBuffer output;
+
+	private final int size;
+
+	private final int stateCount;
+
+	public MappedDoubleArrayTrie(IntBuffer base, IntBuffer check, IntBuffer failure, IntBuffer keyword, IntBuffer output, int stateCount) {
+		this.base = base;
+		this.check = check;
+		this.failure = failure;
+		this.keyword = keyword;
+		this.output = output;
+		this.size = check.limit();
+		this.stateCount = stateCount;
+	}
+
+	@Override
+	public int nextState(int state, int code) {
+		while (true) {
+			if (code != UNKNOWN) {
+				int next = base.get(state) + code;
+
+				if (next < size && check.get(next) == state) {
+					return next;
+				}
+			}
+
+			if (state == ROOT) {
+				return ROOT;
+			}
+
+			state = failure.get(state);
+		}
+	}
+
+	@Override
+	public int keyword(int state) {
+		return keyword.get(state);
+	}
+
+	@Override
+	public int output(int state) {
+		return output.get(state);
+	}
+
+	@Override
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return the size of the mapped arrays, which are not on the heap
+	 */
+	@Override
+	public long getSizeInBytes() {
+		return 4L * 5 * size;
+	}
+
+}
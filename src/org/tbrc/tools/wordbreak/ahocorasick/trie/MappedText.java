@@ -0,0 +1,428 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+import org.tbrc.tools.wordbreak.utils.NfcQuickCheck;
+import org.tbrc.tools.wordbreak.utils.TibetanNormalizer;
+
+/**
+ * Reads the clauses of a UTF-8 text straight from a memory-mapped file into the syllable IDs of
+ * a <code>ParseContext</code>, for <code>Trie.tokenize(MappedText, TokenSink, ParseContext)</code>.
+ * The clauses are those of a <code>ClauseReader</code>, with the same NFC normalization of each
+ * line, but there is no <code>Reader</code>, no line <code>String</code> and no
+ * <code>TibetanNormalizer</code> call for a clause that passes the <code>NfcQuickCheck</code>.
+ * <p>
+ * Tibetan, three bytes in UTF-8, is decoded without branching on the general case; the yi ge are
+ * looked up as they end. The file is mapped a window at a time so that texts of several GB can
+ * be read; a clause must fit in a window.
+ * <p>
+ * Usage:
+ * <pre>
+ *   MappedText text = new MappedText(file, dict.getSyllableTable());
+ *   while (text.nextClause(context)) {
+ *       dict.tokenize(text, sink, context);
+ *   }
+ * </pre>
+ * Like the context, a <code>MappedText</code> belongs to one thread.
+ *
+ * @author Chris
+ */
+public class MappedText implements Closeable {
+
+	/** the largest part of the file that is mapped at once */
+	static final int WINDOW_SIZE = 1 << 30;
+
+	private static final int END = 0;
+
+	private static final int CLAUSE = 1;
+
+	/** the window ends inside the clause */
+	private static final int REMAP = 2;
+
+	/** U+FFFD, for malformed input */
+	private static final int REPLACEMENT = 0xFFFD;
+
+	private final File file;
+
+	private final RandomAccessFile in;
+
+	private final FileChannel channel;
+
+	private final long fileSize;
+
+	private final SyllableTable syllables;
+
+	private final int windowSize;
+
+	private final TibetanNormalizer normalizer;
+
+	private MappedByteBuffer window;
+
+	private long windowStart = 0;
+
+	private int limit = 0;
+
+	/** the position in the window */
+	private int pos = 0;
+
+	/** the characters of the clause, <code>chars[0, length)</code> */
+	private char[] chars = new char[256];
+
+	private CharBuffer text = CharBuffer.wrap(chars);
+
+	private int length = 0;
+
+	/** the clause as a string, made on demand unless it had to be normalized */
+	private String clause = null;
+
+	/** the offsets in the clause where lines start, for normalizing them one by one as ClauseReader does */
+	private int[] lineStarts = new int[16];
+
+	private int lineCount = 0;
+
+	private long clauseOffset = 0;
+
+	private int yiGeCount = 0;
+
+	public MappedText(File file, SyllableTable syllables) throws IOException {
+		this(file, syllables, new TibetanNormalizer());
+	}
+
+	public MappedText(File file, SyllableTable syllables, TibetanNormalizer normalizer) throws IOException {
+		this(file, syllables, normalizer, WINDOW_SIZE);
+	}
+
+	MappedText(File file, SyllableTable syllables, TibetanNormalizer normalizer, int windowSize) throws IOException {
+		this.file = file;
+		this.in = new RandomAccessFile(file, "r");
+		this.channel = in.getChannel();
+		this.fileSize = channel.size();
+		this.syllables = syllables;
+		this.windowSize = windowSize;
+		this.normalizer = normalizer;
+
+		map(0);
+	}
+
+	/**
+	 * Reads the next non-empty clause, storing the IDs and the offsets of its yi ge in the context.
+	 *
+	 * Malformed UTF-8 is read as U+FFFD, as by a <code>ClauseReader</code>.
+	 *
+	 * @return false at the end of the text
+	 * @throws IOException if the file cannot be mapped or a clause does not fit in a window
+	 */
+	public boolean nextClause(ParseContext context) throws IOException {
+		while (true) {
+			int result = readClause(context);
+
+			if (result != REMAP) {
+				return result == CLAUSE;
+			}
+
+			if (pos == 0) {
+				throw new IOException("a clause of " + file + " is longer than " + windowSize + " bytes");
+			}
+
+			map(windowStart + pos);
+		}
+	}
+
+	/**
+	 * @return the number of yi ge of the clause
+	 */
+	public int getYiGeCount() {
+		return yiGeCount;
+	}
+
+	/**
+	 * @return the clause, as <code>ClauseReader.nextClause()</code> returns it; the offsets of the
+	 * tokens are offsets in this string
+	 */
+	public String getClause() {
+		if (clause == null) {
+			clause = new String(chars, 0, length);
+		}
+
+		return clause;
+	}
+
+	/**
+	 * @return the clause as a view of the buffer it was decoded into, valid until the next clause;
+	 * unlike <code>getClause</code>, this makes no string
+	 */
+	public CharSequence getChars() {
+		return text.subSequence(0, length);
+	}
+
+	/**
+	 * @return the offset in the file of the bytes read for the clause
+	 */
+	public long getClauseOffset() {
+		return clauseOffset;
+	}
+
+	/**
+	 * @return the normalizer of the clauses that fail the quick check; it counts the lines, or
+	 * the parts of lines in a clause, that it changed
+	 */
+	public TibetanNormalizer getNormalizer() {
+		return normalizer;
+	}
+
+	SyllableTable getSyllableTable() {
+		return syllables;
+	}
+
+	private void map(long start) throws IOException {
+		long size = Math.min(windowSize, fileSize - start);
+
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		windowStart = start;
+		limit = (int) size;
+		pos = 0;
+	}
+
+	private int readClause(ParseContext context) throws IOException {
+		clauses:
+		while (true) {
+			int clauseStart = pos;
+			boolean normalized = true;
+			int lastCcc = 0;
+			int yiGeStart = -1;
+
+			length = 0;
+			lineCount = 0;
+			yiGeCount = 0;
+			clause = null;
+
+			while (true) {
+				if (pos == limit) {
+					if (windowStart + limit < fileSize) {
+						pos = clauseStart;
+						return REMAP;
+					}
+
+					if (length == 0) {
+						return END;
+					}
+
+					if (yiGeStart >= 0) {
+						addYiGe(context, yiGeStart, length);
+					}
+
+					finish(context, clauseStart, normalized);
+					return CLAUSE;
+				}
+
+				int b = window.get(pos) & 0xFF;
+				char c;
+
+				if (b < 0x80) {
+					c = (char) b;
+					pos++;
+				} else if (b == 0xE0 && pos + 3 <= limit && (window.get(pos + 1) & 0xFC) == 0xBC && (window.get(pos + 2) & 0xC0) == 0x80) {
+					// U+0F00 through U+0FFF
+					c = (char) (0x0F00 | (window.get(pos + 1) & 0x03) << 6 | (window.get(pos + 2) & 0x3F));
+					pos += 3;
+				} else {
+					int codePoint = decode(b);
+
+					if (codePoint < 0) {
+						pos = clauseStart;
+						return REMAP;
+					}
+
+					if (Character.isSupplementaryCodePoint(codePoint)) {
+						if (yiGeStart >= 0) {
+							addYiGe(context, yiGeStart, length);
+							yiGeStart = -1;
+						}
+
+						append(Character.highSurrogate(codePoint));
+						append(Character.lowSurrogate(codePoint));
+						normalized = false;
+						continue;
+					}
+
+					c = (char) codePoint;
+				}
+
+				if (c == '\n' || c == '\r') {
+					// the lines are joined without a separator, so a yi ge may go on in the next line
+					if (lineCount == lineStarts.length) {
+						lineStarts = Arrays.copyOf(lineStarts, 2 * lineCount);
+					}
+
+					lineStarts[lineCount++] = length;
+					lastCcc = 0;
+					continue;
+				}
+
+				if (ClauseReader.isClausePunct(c)) {
+					if (yiGeStart >= 0) {
+						addYiGe(context, yiGeStart, length);
+					}
+
+					if (length == 0) {
+						// an empty clause, as between the two shad of a nyis shad
+						continue clauses;
+					}
+
+					finish(context, clauseStart, normalized);
+					return CLAUSE;
+				}
+
+				append(c);
+
+				if (normalized) {
+					lastCcc = NfcQuickCheck.check(lastCcc, c);
+					normalized = lastCcc != NfcQuickCheck.MAYBE;
+				}
+
+				if (SyllableScanner.isLetter(c)) {
+					if (yiGeStart < 0) {
+						yiGeStart = length - 1;
+					}
+				} else if (yiGeStart >= 0) {
+					addYiGe(context, yiGeStart, length - 1);
+					yiGeStart = -1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes any character other than ASCII and the Tibetan block. Malformed input is read as
+	 * U+FFFD, skipping the bytes a <code>REPLACE</code> decoder would: a bad lead byte alone, a
+	 * sequence up to its first bad byte, an encoded surrogate whole, and a sequence cut short by
+	 * the end of the file.
+	 *
+	 * @return the code point, or -1 if the window ends inside it
+	 */
+	private int decode(int b) {
+		int size;
+		int codePoint;
+
+		if (0xC2 <= b && b <= 0xDF) {
+			size = 2;
+			codePoint = b & 0x1F;
+		} else if (0xE0 <= b && b <= 0xEF) {
+			size = 3;
+			codePoint = b & 0x0F;
+		} else if (0xF0 <= b && b <= 0xF4) {
+			size = 4;
+			codePoint = b & 0x07;
+		} else {
+			pos++;
+			return REPLACEMENT;
+		}
+
+		for (int i = 1; i < size; i++) {
+			if (pos + i == limit) {
+				if (windowStart + limit < fileSize) {
+					return -1;
+				}
+
+				pos = limit;
+				return REPLACEMENT;
+			}
+
+			int next = window.get(pos + i) & 0xFF;
+
+			if ((next & 0xC0) != 0x80 || (i == 1 && ! isSecondByte(b, next))) {
+				pos += i;
+				return REPLACEMENT;
+			}
+
+			codePoint = codePoint << 6 | (next & 0x3F);
+		}
+
+		// the overlong forms and those beyond U+10FFFF are cut at their second byte
+		pos += size;
+		return Character.MIN_SURROGATE <= codePoint && codePoint <= Character.MAX_SURROGATE ? REPLACEMENT : codePoint;
+	}
+
+	/**
+	 * @return whether the second byte of a sequence rules out neither an overlong form nor a code
+	 * point beyond U+10FFFF
+	 */
+	private static boolean isSecondByte(int lead, int next) {
+		switch (lead) {
+		case 0xE0:
+			return next >= 0xA0;
+		case 0xF0:
+			return next >= 0x90;
+		case 0xF4:
+			return next < 0x90;
+		default:
+			return true;
+		}
+	}
+
+	private void append(char c) {
+		if (length == chars.length) {
+			chars = Arrays.copyOf(chars, 2 * length);
+			text = CharBuffer.wrap(chars);
+		}
+
+		chars[length++] = c;
+	}
+
+	private void addYiGe(ParseContext context, int start, int end) {
+		int id = syllables.lookup(text, start, YiGe.normalizedEnd(text, start, end));
+
+		context.setYiGe(yiGeCount++, id, start, end);
+	}
+
+	private void finish(ParseContext context, int clauseStart, boolean normalized) {
+		clauseOffset = windowStart + clauseStart;
+
+		if (! normalized) {
+			normalize(context);
+		}
+	}
+
+	/**
+	 * Normalizes each line of the clause, then finds its yi ge again.
+	 */
+	private void normalize(ParseContext context) {
+		StringBuilder normalized = new StringBuilder(length);
+		int lineStart = 0;
+
+		for (int i = 0; i <= lineCount; i++) {
+			int lineEnd = i < lineCount ? lineStarts[i] : length;
+
+			normalized.append(normalizer.normalize(new String(chars, lineStart, lineEnd - lineStart)));
+			lineStart = lineEnd;
+		}
+
+		clause = normalized.toString();
+		length = 0;
+		yiGeCount = 0;
+
+		for (int i = 0; i < clause.length(); i++) {
+			append(clause.charAt(i));
+		}
+
+		SyllableScanner scanner = new SyllableScanner(clause);
+
+		while (scanner.next()) {
+			addYiGe(context, scanner.start(), scanner.end());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
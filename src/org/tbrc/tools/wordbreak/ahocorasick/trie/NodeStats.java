@@ -0,0 +1,112 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Counts the states of the <code>State</code> graph of a trie by the layout of their transitions:
+ * leaves, states with sorted arrays and hashed states, and the fan-out of the states at each
+ * depth.
+ *
+ * @author Chris
+ */
+public class NodeStats {
+
+	/** the fan-outs counted separately; larger ones are counted together */
+	public static final int MAX_FAN_OUT = 8;
+
+	private int stateCount = 0;
+
+	private int leafCount = 0;
+
+	private int arrayCount = 0;
+
+	private int hashCount = 0;
+
+	private long transitionCount = 0;
+
+	private int maxFanOut = 0;
+
+	private int maxDepth = 0;
+
+	/** the number of states with each fan-out, the last entry for all the larger ones */
+	private final int[] fanOuts = new int[MAX_FAN_OUT + 2];
+
+	/**
+	 * @throws IllegalArgumentException if the trie is compiled and has no State graph
+	 */
+	public NodeStats(Trie trie) {
+		State rootState = trie.getRootState();
+
+		if (rootState == null) {
+			throw new IllegalArgumentException("the trie is compiled, build it with TrieBuilder.buildStateGraph");
+		}
+
+		Queue<State> queue = new ArrayDeque<State>();
+		queue.add(rootState);
+
+		while (! queue.isEmpty()) {
+			State state = queue.remove();
+			int fanOut = state.getTransitionCount();
+
+			stateCount++;
+			transitionCount += fanOut;
+			maxFanOut = Math.max(maxFanOut, fanOut);
+			maxDepth = Math.max(maxDepth, state.getDepth());
+			fanOuts[Math.min(fanOut, MAX_FAN_OUT + 1)]++;
+
+			if (fanOut == 0) {
+				leafCount++;
+			} else if (state.isHashed()) {
+				hashCount++;
+			} else {
+				arrayCount++;
+			}
+
+			queue.addAll(state.getStates());
+		}
+	}
+
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * @return the number of states with transitions in sorted arrays
+	 */
+	public int getArrayCount() {
+		return arrayCount;
+	}
+
+	/**
+	 * @return the number of states with hashed transitions, the root among them
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	public long getTransitionCount() {
+		return transitionCount;
+	}
+
+	public int getMaxFanOut() {
+		return maxFanOut;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return the number of states with <code>fanOut</code> transitions; for <code>MAX_FAN_OUT + 1</code>,
+	 * the number with more than <code>MAX_FAN_OUT</code>
+	 */
+	public int getFanOutCount(int fanOut) {
+		return fanOuts[fanOut];
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+import org.tbrc.tools.wordbreak.ahocorasick.interval.OverlapResolver;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.ViterbiSegmenter;
+
+/**
+ * The per-call state of <code>Trie.tokenize</code> and <code>Trie.parseText</code>: counters for
+ * the document being parsed and buffers that are reused from one clause to the next.
+ * <p>
+ * A <code>Trie</code> is shared between threads; a context is not, each thread parses with its own.
+ *
+ * @author Chris
+ */
+public class ParseContext {
+
+	private int yiGeCount = 0;
+
+	/** the syllable IDs of the clause being parsed */
+	private int[] ids = new int[64];
+
+	/** the offsets of the yi ge of the clause being tokenized */
+	private int[] starts = new int[64];
+
+	private int[] ends = new int[64];
+
+	private EmitBuffer emits = new EmitBuffer();
+
+	private OverlapResolver overlapResolver = new OverlapResolver();
+
+	private ViterbiSegmenter segmenter = new ViterbiSegmenter();
+
+	private Lattice lattice = new Lattice();
+
+	/**
+	 * @return the number of yi ge tokenized with this context since it was created or reset
+	 */
+	public int getYiGeCount() {
+		return yiGeCount;
+	}
+
+	public void resetYiGeCount() {
+		yiGeCount = 0;
+	}
+
+	void addYiGeCount(int count) {
+		yiGeCount += count;
+	}
+
+	/**
+	 * @return a buffer of at least <code>length</code> ints, valid until the next call
+	 */
+	int[] ids(int length) {
+		if (ids.length < length) {
+			ids = new int[Math.max(length, 2 * ids.length)];
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Records the syllable ID and the offsets of yi ge number <code>i</code> of the clause.
+	 */
+	void setYiGe(int i, int id, int start, int end) {
+		if (i == ids.length) {
+			ids = Arrays.copyOf(ids, 2 * i);
+		}
+
+		if (i == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * i);
+			ends = Arrays.copyOf(ends, 2 * i);
+		}
+
+		ids[i] = id;
+		starts[i] = start;
+		ends[i] = end;
+	}
+
+	int[] ids() {
+		return ids;
+	}
+
+	int[] starts() {
+		return starts;
+	}
+
+	int[] ends() {
+		return ends;
+	}
+
+	EmitBuffer emits() {
+		return emits;
+	}
+
+	OverlapResolver overlapResolver() {
+		return overlapResolver;
+	}
+
+	ViterbiSegmenter segmenter() {
+		return segmenter;
+	}
+
+	Lattice lattice() {
+		return lattice;
+	}
+
+}
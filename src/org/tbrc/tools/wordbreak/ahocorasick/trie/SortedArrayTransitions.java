@@ -0,0 +1,93 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+/**
+ * Transitions in two parallel arrays sorted by yi ge, searched linearly. Far smaller than a
+ * hash map for the one or two transitions of most states.
+ * <p>
+ * The arrays are exactly as long as the number of transitions: <code>put</code> replaces them
+ * with arrays one longer, which is cheap for so few transitions and leaves no slack once the
+ * trie is built. <code>EMPTY</code> is shared by all the leaves and is never changed; putting
+ * into it returns a new instance.
+ *
+ * @author Chris
+ */
+public class SortedArrayTransitions implements Transitions {
+
+    /** beyond this many transitions, <code>put</code> moves them to a <code>HashTransitions</code> */
+    public static final int MAX_SIZE = 8;
+
+    public static final SortedArrayTransitions EMPTY = new SortedArrayTransitions();
+
+    private int[] labels = new int[0];
+
+    private State[] targets = new State[0];
+
+    @Override
+    public State get(int yiGe) {
+        int[] labels = this.labels;
+
+        for (int i = 0; i < labels.length; i++) {
+            int label = labels[i];
+
+            if (label >= yiGe) {
+                return label == yiGe ? targets[i] : null;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Transitions put(int yiGe, State state) {
+        int size = labels.length;
+
+        if (size == MAX_SIZE) {
+            HashTransitions hashed = new HashTransitions(2 * MAX_SIZE);
+
+            for (int i = 0; i < size; i++) {
+                hashed.put(labels[i], targets[i]);
+            }
+
+            return hashed.put(yiGe, state);
+        }
+
+        int[] newLabels = new int[size + 1];
+        State[] newTargets = new State[size + 1];
+
+        int i = 0;
+
+        while (i < size && labels[i] < yiGe) {
+            i++;
+        }
+
+        System.arraycopy(labels, 0, newLabels, 0, i);
+        System.arraycopy(targets, 0, newTargets, 0, i);
+        newLabels[i] = yiGe;
+        newTargets[i] = state;
+        System.arraycopy(labels, i, newLabels, i + 1, size - i);
+        System.arraycopy(targets, i, newTargets, i + 1, size - i);
+
+        SortedArrayTransitions transitions = this == EMPTY ? new SortedArrayTransitions() : this;
+
+        transitions.labels = newLabels;
+        transitions.targets = newTargets;
+
+        return transitions;
+    }
+
+    @Override
+    public int size() {
+        return labels.length;
+    }
+
+    @Override
+    public int[] getLabels() {
+        return labels.clone();
+    }
+
+    @Override
+    public State[] getTargets() {
+        return targets.clone();
+    }
+
+}
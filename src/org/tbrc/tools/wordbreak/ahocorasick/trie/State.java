@@ -12,7 +12,8 @@ import java.util.*;
  *     <li>failure; when a character has no matching state, the algorithm must be able to fall back on a
  *         state with less depth</li>
  *     <li>emits; when this state is passed and keywords have been matched, the matches must be
- *         'emitted' so that they can be used later on.</li>
+ *         'emitted' so that they can be used later on. A state only holds the keyword that ends in it;
+ *         the keywords that are suffixes of it are found by following the output links.</li>
  * </ul>
  *
  * <p>
@@ -24,7 +25,7 @@ import java.util.*;
  * @author Robert Bor
  * 
  * Changed the use of Character to YiGe so that entire syllables are handled rather pieces like sub-joined-ra
- * and so on.
+ * and so on. Transitions are on the <code>SyllableTable</code> ID of the yi ge.
  * 
  * @author Chris
  */
@@ -33,20 +34,25 @@ public class State {
     /** effective the size of the keyword */
     private final int depth;
 
-    /** only used for the root state to refer to itself in case no matches have been found */
-    private final State rootState;
-
     /**
      * referred to in the white paper as the 'goto' structure. From a state it is possible to go
-     * to other states, depending on the character passed.
+     * to other states, depending on the ID of the yi ge passed. The root and the few states with
+     * many transitions hash them; every other state has them in sorted arrays, and the leaves
+     * share one empty instance.
      */
-    private Map<YiGe, State> success = new TreeMap<YiGe, State>();
+    private Transitions success;
 
     /** if no matching states are found, the failure state will be returned */
     private State failure = null;
 
-    /** whenever this state is reached, it will emit the matches keywords for future reference */
-    private Set<YiGeSeq> emits = null;
+    /** the ID of the keyword that ends in this state, -1 if none */
+    private int keyword = -1;
+
+    /**
+     * the dictionary suffix link: the nearest state along the failure links that has a keyword,
+     * null if there is none
+     */
+    private State output = null;
 
     public State() {
         this(0);
@@ -54,33 +60,34 @@ public class State {
 
     public State(int depth) {
         this.depth = depth;
-        this.rootState = depth == 0 ? this : null;
+        this.success = depth == 0 ? new HashTransitions(SortedArrayTransitions.MAX_SIZE) : SortedArrayTransitions.EMPTY;
     }
 
-    private State nextState(YiGe yiGe, boolean ignoreRootState) {
+    private State nextState(int yiGe, boolean ignoreRootState) {
         State nextState = this.success.get(yiGe);
         
-        if (! ignoreRootState && nextState == null && this.rootState != null) {
-            nextState = this.rootState;
+        // the root refers to itself in case no matches have been found
+        if (! ignoreRootState && nextState == null && this.depth == 0) {
+            nextState = this;
         }
         
         return nextState;
     }
 
-    public State nextState(YiGe yiGe) {
+    public State nextState(int yiGe) {
         return nextState(yiGe, false);
     }
 
-    public State nextStateIgnoreRootState(YiGe yiGe) {
+    public State nextStateIgnoreRootState(int yiGe) {
         return nextState(yiGe, true);
     }
 
-    public State addState(YiGe yiGe) {
+    public State addState(int yiGe) {
         State nextState = nextStateIgnoreRootState(yiGe);
         
         if (nextState == null) {
             nextState = new State(this.depth+1);
-            this.success.put(yiGe, nextState);
+            this.success = this.success.put(yiGe, nextState);
         }
         
         return nextState;
@@ -90,22 +97,27 @@ public class State {
         return this.depth;
     }
 
-    public void addEmit(YiGeSeq keyword) {
-        if (this.emits == null) {
-            this.emits = new TreeSet<>();
-        }
-        
-        this.emits.add(keyword);
+    public void setKeyword(int keyword) {
+        this.keyword = keyword;
     }
 
-    public void addEmit(Collection<YiGeSeq> emits) {
-        for (YiGeSeq emit : emits) {
-            addEmit(emit);
-        }
+    /**
+     * @return the ID of the keyword that ends in this state, -1 if none
+     */
+    public int getKeyword() {
+        return this.keyword;
     }
 
-    public Collection<YiGeSeq> emit() {
-        return this.emits == null ? Collections.<YiGeSeq> emptyList() : this.emits;
+    public boolean isTerminal() {
+        return this.keyword >= 0;
+    }
+
+    public State output() {
+        return this.output;
+    }
+
+    public void setOutput(State output) {
+        this.output = output;
     }
 
     public State failure() {
@@ -117,11 +129,28 @@ public class State {
     }
 
     public Collection<State> getStates() {
-        return this.success.values();
+        return Arrays.asList(this.success.getTargets());
+    }
+
+    /**
+     * @return the yi ge of the transitions out of this state, in no particular order
+     */
+    public int[] getTransitions() {
+        return this.success.getLabels();
     }
 
-    public Collection<YiGe> getTransitions() {
-        return this.success.keySet();
+    /**
+     * @return the number of transitions out of this state
+     */
+    public int getTransitionCount() {
+        return this.success.size();
+    }
+
+    /**
+     * @return whether the transitions are hashed rather than in sorted arrays
+     */
+    boolean isHashed() {
+        return this.success instanceof HashTransitions;
     }
 
 }
@@ -0,0 +1,108 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+/**
+ * Finds the yi ge of a string in a single pass: a yi ge is a maximal run of Tibetan letters,
+ * U+0F00, U+0F40 through U+0F83 and U+0F90 through U+0FBC; everything else, tsheg, shad,
+ * digits, spaces and so on, separates them. This is the segmentation of the regex split that
+ * <code>YiGeSeq.toYiGe</code> used to do, without the regex and the intermediate array.
+ * <p>
+ * Usage:
+ * <pre>
+ *   SyllableScanner scanner = new SyllableScanner(text);
+ *   while (scanner.next()) {
+ *       ... text.substring(scanner.start(), scanner.end()) ...
+ *   }
+ * </pre>
+ *
+ * @author Chris
+ */
+public class SyllableScanner {
+
+	/** whether each character of the Tibetan block, U+0F00 through U+0FFF, is a letter */
+	private static final boolean[] LETTER = new boolean[0x100];
+
+	static {
+		LETTER[0x00] = true;
+
+		for (int c = 0x40; c <= 0x83; c++) {
+			LETTER[c] = true;
+		}
+
+		for (int c = 0x90; c <= 0xBC; c++) {
+			LETTER[c] = true;
+		}
+	}
+
+	private final CharSequence text;
+
+	private final int length;
+
+	private int start = 0;
+
+	private int end = 0;
+
+	public SyllableScanner(CharSequence text) {
+		this.text = text;
+		this.length = text.length();
+	}
+
+	public static boolean isLetter(char c) {
+		return (c >>> 8) == 0x0F && LETTER[c & 0xFF];
+	}
+
+	/**
+	 * Moves to the next yi ge.
+	 *
+	 * @return false if there are no more
+	 */
+	public boolean next() {
+		int pos = end;
+
+		while (pos < length && ! isLetter(text.charAt(pos))) {
+			pos++;
+		}
+
+		if (pos == length) {
+			start = end = length;
+			return false;
+		}
+
+		start = pos;
+
+		while (pos < length && isLetter(text.charAt(pos))) {
+			pos++;
+		}
+
+		end = pos;
+		return true;
+	}
+
+	/**
+	 * @return the offset of the first character of the current yi ge
+	 */
+	public int start() {
+		return start;
+	}
+
+	/**
+	 * @return the offset after the last character of the current yi ge
+	 */
+	public int end() {
+		return end;
+	}
+
+	/**
+	 * @return the number of yi ge in the text
+	 */
+	public static int count(CharSequence text) {
+		SyllableScanner scanner = new SyllableScanner(text);
+		int count = 0;
+
+		while (scanner.next()) {
+			count++;
+		}
+
+		return count;
+	}
+
+}
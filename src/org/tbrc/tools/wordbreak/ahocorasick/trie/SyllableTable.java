@@ -0,0 +1,203 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.Arrays;
+
+/**
+ * Interns each distinct yi ge to a dense <code>int</code> ID. The table is filled while the
+ * dictionary is loaded; afterwards each syllable of the text is resolved to its ID with a single
+ * probe of an open addressing hash table, and syllables that are not in the table resolve to
+ * <code>NONE</code>.
+ * <p>
+ * Syllables are keyed by their normalized form, <code>YiGe.getNormalized()</code>, so that a
+ * yi ge with a 'i, 'o or 'is ending has the same ID as the yi ge without the ending.
+ *
+ * @author Chris
+ */
+public class SyllableTable {
+
+	/** the ID of a syllable that is not in the table */
+	public static final int NONE = -1;
+
+	private String[] keys = new String[1024];
+
+	private int[] ids = new int[1024];
+
+	private String[] syllables = new String[256];
+
+	private int size = 0;
+
+	/** set once the trie is built, after which the table is only read */
+	private boolean frozen = false;
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the syllable with the given ID
+	 */
+	public String get(int id) {
+		return syllables[id];
+	}
+
+	public int intern(YiGe yiGe) {
+		int id = intern(yiGe.getNormalized());
+
+		yiGe.setId(id);
+		return id;
+	}
+
+	public int intern(String syllable) {
+		int slot = slot(syllable);
+
+		if (keys[slot] == null) {
+			if (frozen) {
+				throw new IllegalStateException("cannot intern " + syllable + " in a frozen table");
+			}
+
+			if (size == syllables.length) {
+				syllables = Arrays.copyOf(syllables, size * 2);
+			}
+
+			keys[slot] = syllable;
+			ids[slot] = size;
+			syllables[size] = syllable;
+			size++;
+
+			if (2 * size > keys.length) {
+				rehash();
+			}
+
+			return size - 1;
+		}
+
+		return ids[slot];
+	}
+
+	public int lookup(YiGe yiGe) {
+		return lookup(yiGe.getNormalized());
+	}
+
+	/**
+	 * @return the ID of the syllable or <code>NONE</code>
+	 */
+	public int lookup(String syllable) {
+		int slot = slot(syllable);
+
+		return keys[slot] == null ? NONE : ids[slot];
+	}
+
+	/**
+	 * @return the ID of the syllable <code>text[start, end)</code>, already normalized, or <code>NONE</code>
+	 */
+	public int lookup(CharSequence text, int start, int end) {
+		int h = 0;
+
+		// String.hashCode of the range
+		for (int i = start; i < end; i++) {
+			h = 31 * h + text.charAt(i);
+		}
+
+		int mask = keys.length - 1;
+		int slot = mix(h) & mask;
+
+		while (keys[slot] != null) {
+			if (matches(keys[slot], text, start, end)) {
+				return ids[slot];
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return NONE;
+	}
+
+	public int[] intern(YiGeSeq seq) {
+		int[] seqIds = new int[seq.length()];
+		int i = 0;
+
+		for (YiGe yiGe : seq) {
+			seqIds[i++] = intern(yiGe);
+		}
+
+		return seqIds;
+	}
+
+	public int[] lookup(YiGeSeq seq) {
+		return lookup(seq, new int[seq.length()]);
+	}
+
+	/**
+	 * Stores the IDs of the yi ge of <code>seq</code> in <code>seqIds</code>, which must be at
+	 * least as long as <code>seq</code>.
+	 */
+	public int[] lookup(YiGeSeq seq, int[] seqIds) {
+		int i = 0;
+
+		for (YiGe yiGe : seq) {
+			seqIds[i++] = lookup(yiGe);
+		}
+
+		return seqIds;
+	}
+
+	/**
+	 * Disallows new syllables, so that the table can be read by several threads.
+	 */
+	void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/** linear probing; the table is never more than half full */
+	private int slot(String syllable) {
+		int mask = keys.length - 1;
+		int slot = mix(syllable.hashCode()) & mask;
+
+		while (keys[slot] != null && ! keys[slot].equals(syllable)) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private static boolean matches(String key, CharSequence text, int start, int end) {
+		if (key.length() != end - start) {
+			return false;
+		}
+
+		for (int i = start; i < end; i++) {
+			if (key.charAt(i - start) != text.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void rehash() {
+		String[] oldKeys = keys;
+		int[] oldIds = ids;
+
+		keys = new String[oldKeys.length * 2];
+		ids = new int[oldKeys.length * 2];
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = slot(oldKeys[i]);
+
+				keys[slot] = oldKeys[i];
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+
+	/** spreads the bits of String.hashCode, whose low bits are weak for short strings */
+	static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
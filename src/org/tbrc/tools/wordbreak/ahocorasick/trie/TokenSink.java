@@ -0,0 +1,27 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+/**
+ * Receives the tokens of <code>Trie.tokenize(CharSequence, TokenSink, ParseContext)</code> as
+ * primitives, in order, so that a consumer that only counts or indexes them does not allocate
+ * anything per token.
+ *
+ * @author Chris
+ */
+public interface TokenSink {
+
+	/** a run of yi ge that is not part of any match */
+	public static final int FRAGMENT = 0;
+
+	/** a keyword of the dictionary */
+	public static final int MATCH = 1;
+
+	/**
+	 * @param kind <code>FRAGMENT</code> or <code>MATCH</code>
+	 * @param startOffset the offset in the text of the first character of the first yi ge
+	 * @param endOffset the offset in the text after the last character of the last yi ge
+	 * @param keywordId the ID of the keyword matched, -1 for a fragment; its sources are
+	 * <code>Trie.getKeywordSources(keywordId)</code>
+	 */
+	public void token(int kind, int startOffset, int endOffset, int keywordId);
+
+}
@@ -0,0 +1,38 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+/**
+ * The goto transitions out of a <code>State</code>, keyed by the <code>SyllableTable</code> ID
+ * of the yi ge. A state with few transitions, which is nearly every state, keeps them in a
+ * <code>SortedArrayTransitions</code>; past <code>SortedArrayTransitions.MAX_SIZE</code> they
+ * move to a <code>HashTransitions</code>, as do those of the root from the start.
+ *
+ * @author Chris
+ */
+public interface Transitions {
+
+    /**
+     * @return the state reached on <code>yiGe</code>, null if none
+     */
+    public State get(int yiGe);
+
+    /**
+     * Adds a transition that is not there yet.
+     *
+     * @return the transitions to use from now on: these or, if they have outgrown their
+     * strategy, a copy in another one
+     */
+    public Transitions put(int yiGe, State state);
+
+    public int size();
+
+    /**
+     * @return the yi ge of the transitions, in no particular order
+     */
+    public int[] getLabels();
+
+    /**
+     * @return the target states, in the order of <code>getLabels</code>
+     */
+    public State[] getTargets();
+
+}
@@ -1,14 +1,10 @@
 package org.tbrc.tools.wordbreak.ahocorasick.trie;
 
-import org.tbrc.tools.wordbreak.ahocorasick.interval.IntervalTree;
-import org.tbrc.tools.wordbreak.ahocorasick.interval.Intervalable;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  *
@@ -18,242 +14,501 @@ import java.util.concurrent.LinkedBlockingDeque;
  * 
  * Modified so that String becomes YiGeSeq and Character becomes YiGe. This way the algorithm is operating over sequences of
  * Tibetan syllables instead of raw Unicode codepoints.
+ * <p>
+ * A trie is built by a <code>TrieBuilder</code> and is immutable, so one instance can serve every
+ * thread; the state of each call, such as the yi ge count, is kept in a <code>ParseContext</code>.
  * 
  * @author Chris
  */
 public class Trie {
-	
-	public static boolean parsing = false;
 
-	private TrieConfig trieConfig;
+	/** how much less probable a yi ge outside every keyword is than a keyword never seen */
+	private static final double GAP_PENALTY = Math.log(10);
 
-	private State rootState;
-	
-	private int yiGeCount = 0;
+	private final boolean allowOverlaps;
 
-	private boolean failureStatesConstructed = false;
+	private final boolean onlyWholeWords;
 
-	public Trie(TrieConfig trieConfig) {
-		this.trieConfig = trieConfig;
-		this.rootState = new State();
-	}
+	private final boolean weightedSegmentation;
+
+	/** the State graph when parsing without a compiled automaton, null otherwise */
+	private final State rootState;
+
+	private final Automaton compiled;
+
+	/** the goto function behind <code>compiled</code>, kept for <code>DictionaryImage</code> */
+	private final DoubleArrayTrie doubleArray;
+
+	/** the minimized keywords, reversed, when parsing with neither a State graph nor an automaton */
+	private final Dawg dawg;
+
+	/** the IDs of the yi ge of the keywords and of the text */
+	private final SyllableTable syllables;
+
+	/** the keywords as added, indexed by keyword ID */
+	private final List<String> keywords;
+
+	/** parsed on first use by getKeyword */
+	private final AtomicReferenceArray<YiGeSeq> keywordSeqs;
+
+	private final int[] keywordLengths;
+
+	/** a bit for each dictionary the keyword came from, indexed by keyword ID */
+	private final int[] keywordSources;
+
+	/** the names of the dictionaries, indexed by source ID */
+	private final List<String> sourceNames;
+
+	/** the frequencies of the keywords in a corpus, indexed by keyword ID */
+	private final int[] keywordFrequencies;
+
+	/** the cost, -log p, of each keyword, for weighted segmentation and lattices */
+	private final double[] keywordCosts;
+
+	/** the cost of a yi ge outside every keyword */
+	private final double gapCost;
 
-	public Trie() {
-		this(new TrieConfig());
+	/**
+	 * Tries are built by a <code>TrieBuilder</code> or loaded from a <code>DictionaryImage</code>.
+	 * Exactly one of <code>rootState</code>, <code>compiled</code> and <code>dawg</code> is given.
+	 */
+	Trie(TrieConfig trieConfig, SyllableTable syllables, List<String> keywords, int[] keywordLengths,
+			int[] keywordSources, List<String> sourceNames, int[] keywordFrequencies, State rootState, DoubleArrayTrie doubleArray, Automaton compiled, Dawg dawg) {
+		this.allowOverlaps = trieConfig.isAllowOverlaps();
+		this.onlyWholeWords = trieConfig.isOnlyWholeWords();
+		this.weightedSegmentation = trieConfig.isWeightedSegmentation();
+		this.syllables = syllables;
+		this.keywords = keywords;
+		this.keywordSeqs = new AtomicReferenceArray<YiGeSeq>(keywords.size());
+		this.keywordLengths = keywordLengths;
+		this.keywordSources = keywordSources;
+		this.sourceNames = sourceNames;
+		this.keywordFrequencies = keywordFrequencies;
+		this.rootState = rootState;
+		this.doubleArray = doubleArray;
+		this.compiled = compiled;
+		this.dawg = dawg;
+
+		// with add-one smoothing, so that a keyword never seen still beats leaving its yi ge out
+		long total = keywordFrequencies.length;
+
+		for (int frequency : keywordFrequencies) {
+			total += frequency;
+		}
+
+		double logTotal = Math.log(Math.max(total, 1));
+
+		this.keywordCosts = new double[keywordFrequencies.length];
+
+		for (int keywordId = 0; keywordId < keywordFrequencies.length; keywordId++) {
+			this.keywordCosts[keywordId] = logTotal - Math.log(keywordFrequencies[keywordId] + 1.0);
+		}
+
+		this.gapCost = logTotal + GAP_PENALTY;
 	}
-	
-	public int getYiGeCount() {
-		return yiGeCount;
+
+	public boolean isCompiled() {
+		return this.compiled != null;
 	}
-	
-	public void resetYiGeCount() {
-		yiGeCount = 0;
+
+	/**
+	 * @return the compiled automaton or null if the trie parses with the <code>State</code> graph
+	 */
+	public Automaton getAutomaton() {
+		return this.compiled;
 	}
 
-	public Trie caseInsensitive() {
-		this.trieConfig.setCaseInsensitive(true);
-		return this;
+	/**
+	 * @return the DAWG of a minimized trie, null otherwise
+	 */
+	public Dawg getDawg() {
+		return this.dawg;
 	}
 
-	public Trie removeOverlaps() {
-		this.trieConfig.setAllowOverlaps(false);
-		return this;
+	/**
+	 * @return the syllable table, frozen
+	 */
+	public SyllableTable getSyllableTable() {
+		return this.syllables;
 	}
 
-	public Trie onlyWholeWords() {
-		this.trieConfig.setOnlyWholeWords(true);
-		return this;
+	public int getKeywordCount() {
+		return this.keywords.size();
 	}
 
-	public void addKeyword(String keyword) {
-		if (keyword == null || keyword.isEmpty()) {
-			return;
+	public YiGeSeq getKeyword(int keywordId) {
+		YiGeSeq keyword = this.keywordSeqs.get(keywordId);
+
+		if (keyword == null) {
+			// two threads may both parse the keyword; either result will do
+			keyword = new YiGeSeq(this.keywords.get(keywordId));
+			this.keywordSeqs.set(keywordId, keyword);
 		}
 
-		State currentState = this.rootState;
+		return keyword;
+	}
+
+	public int getKeywordLength(int keywordId) {
+		return this.keywordLengths[keywordId];
+	}
 
-		YiGeSeq seq = new YiGeSeq(keyword);
+	/**
+	 * @return a bit for each source of the keyword, <code>1 << sourceId</code>; 0 if it was added
+	 * with none
+	 */
+	public int getKeywordSources(int keywordId) {
+		return this.keywordSources[keywordId];
+	}
+
+	/**
+	 * @return the frequency of the keyword given with the dictionary, 0 if none was
+	 */
+	public int getKeywordFrequency(int keywordId) {
+		return this.keywordFrequencies[keywordId];
+	}
+
+	public int getSourceCount() {
+		return this.sourceNames.size();
+	}
+
+	public String getSourceName(int sourceId) {
+		return this.sourceNames.get(sourceId);
+	}
 
-		for (YiGe s : seq) {
-			currentState = currentState.addState(s);
+	/**
+	 * @return the root of the State graph, null if the trie is compiled
+	 */
+	State getRootState() {
+		return this.rootState;
+	}
+
+	/**
+	 * @return the keyword as it was added
+	 */
+	public String getKeywordText(int keywordId) {
+		return this.keywords.get(keywordId);
+	}
+
+	/**
+	 * @return the double-array of a compiled trie
+	 * @throws IllegalStateException if the trie is not compiled or was loaded from an image
+	 */
+	DoubleArrayTrie getDoubleArray() {
+		if (this.doubleArray == null) {
+			throw new IllegalStateException("the trie has no DoubleArrayTrie, it was loaded from an image or not compiled");
 		}
 
-		currentState.addEmit(seq);
+		return this.doubleArray;
 	}
 
 	public Collection<Token> tokenize(String textStr) {
+		return tokenize(textStr, new ParseContext());
+	}
 
-		YiGeSeq text = new YiGeSeq(textStr);
-		
-		yiGeCount += text.length();
-
-		Collection<Token> tokens = new ArrayList<Token>();
+	/**
+	 * Tokenizes <code>textStr</code>, adding its yi ge to the count of the <code>context</code>.
+	 * This builds the tokens from the callbacks of <code>tokenize(CharSequence, TokenSink, ParseContext)</code>.
+	 */
+	public Collection<Token> tokenize(String textStr, ParseContext context) {
 
-		Collection<Emit> collectedEmits = parseText(text);
-		int lastCollectedPosition = -1;
+		TokenCollector collector = new TokenCollector(new YiGeSeq(textStr), context);
 
-		for (Emit emit : collectedEmits) {
+		tokenize(textStr, collector, context);
 
-			if (emit.getStart() - lastCollectedPosition > 1) {
-				tokens.add(createFragment(emit, text, lastCollectedPosition));
-			}
+		return collector.tokens;
+	}
 
-			tokens.add(createMatch(emit, text));
+	/**
+	 * Tokenizes <code>text</code> into <code>sink</code>: matches, and fragments for the runs of
+	 * yi ge between them, in order. Nothing is allocated per token.
+	 */
+	public void tokenize(CharSequence text, TokenSink sink, ParseContext context) {
+		tokenize(scan(text, context), sink, context);
+	}
 
-			lastCollectedPosition = emit.getEnd();
+	/**
+	 * Tokenizes the clause last read by <code>text.nextClause(context)</code> into <code>sink</code>;
+	 * the offsets are offsets in <code>text.getClause()</code>.
+	 */
+	public void tokenize(MappedText text, TokenSink sink, ParseContext context) {
+		if (text.getSyllableTable() != this.syllables) {
+			throw new IllegalArgumentException("the text was read with the syllable table of another trie");
 		}
 
-		if (text.length() - lastCollectedPosition > 1) {
-			tokens.add(createFragment(null, text, lastCollectedPosition));
-		}
+		tokenize(text.getYiGeCount(), sink, context);
+	}
 
-		return tokens;
+	/**
+	 * Builds the lattice of all the segmentations of <code>text</code>, from all its emits whatever
+	 * the overlap configured, weighted by the frequencies of the keywords. Like <code>tokenize</code>,
+	 * adds the yi ge to the count of the context.
+	 *
+	 * @return the lattice of the context, valid until its next use
+	 */
+	public Lattice lattice(CharSequence text, ParseContext context) {
+		return lattice(scan(text, context), context);
 	}
 
-	private Token createFragment(Emit emit, YiGeSeq text, int lastCollectedPosition) {
+	/**
+	 * Builds the lattice of the clause last read by <code>text.nextClause(context)</code>; the
+	 * offsets are offsets in <code>text.getClause()</code>.
+	 */
+	public Lattice lattice(MappedText text, ParseContext context) {
+		if (text.getSyllableTable() != this.syllables) {
+			throw new IllegalArgumentException("the text was read with the syllable table of another trie");
+		}
 
-		int start = lastCollectedPosition + 1;
-		int end = emit == null ? text.length() : emit.getStart();
+		return lattice(text.getYiGeCount(), context);
+	}
 
-		YiGeSeq fragment = text.subseq(start, end);
+	/**
+	 * Stores the IDs and the offsets of the yi ge of <code>text</code> in the context.
+	 *
+	 * @return the number of yi ge
+	 */
+	private int scan(CharSequence text, ParseContext context) {
+		SyllableScanner scanner = new SyllableScanner(text);
+		int length = 0;
+
+		while (scanner.next()) {
+			int start = scanner.start();
+			int end = scanner.end();
+			int id = this.syllables.lookup(text, start, YiGe.normalizedEnd(text, start, end));
+
+			context.setYiGe(length++, id, start, end);
+		}
 
-		return new FragmentToken(fragment);
+		return length;
 	}
 
-	private Token createMatch(Emit emit, YiGeSeq text) {
+	private Lattice lattice(int length, ParseContext context) {
+		context.addYiGeCount(length);
 
-		int start = emit.getStart();
-		int end = emit.getEnd() + 1;
+		EmitBuffer emits = collectAllEmits(context.ids(), length, context);
+		Lattice lattice = context.lattice();
 
-		YiGeSeq match = text.subseq(start, end);
+		lattice.reset(emits, length, context.starts(), context.ends(), this.keywordCosts, this.gapCost);
 
-		return new MatchToken(match, emit);
+		return lattice;
 	}
 
-	@SuppressWarnings("unchecked")
-	public Collection<Emit> parseText(YiGeSeq text) {
-		
-		checkForConstructedFailureStates();
+	/**
+	 * Tokenizes the <code>length</code> yi ge whose IDs and offsets are in the context.
+	 */
+	private void tokenize(int length, TokenSink sink, ParseContext context) {
+		context.addYiGeCount(length);
 
-		int position = 0;
-		State currentState = this.rootState;
-		List<Emit> collectedEmits = new ArrayList<Emit>();
-		
-		for (YiGe yiGe : text) {
-			if (trieConfig.isCaseInsensitive()) {
-				// character = Character.toLowerCase(character);
-				// nothing to do here since there is no case
-				// in Tibetan
+		int[] starts = context.starts();
+		int[] ends = context.ends();
+
+		EmitBuffer emits = collectEmits(context.ids(), length, context);
+		int lastCollectedPosition = -1;
+
+		for (int i = 0; i < emits.size(); i++) {
+			int start = emits.getStart(i);
+			int end = emits.getEnd(i);
+
+			if (start - lastCollectedPosition > 1) {
+				sink.token(TokenSink.FRAGMENT, starts[lastCollectedPosition + 1], ends[start - 1], -1);
 			}
-			
-			currentState = getState(currentState, yiGe);
-			storeEmits(position, currentState, collectedEmits);
-			position++;
-		}
 
-		if (trieConfig.isOnlyWholeWords()) {
-			removePartialMatches(text, collectedEmits);
-		}
+			sink.token(TokenSink.MATCH, starts[start], ends[end], emits.getKeywordId(i));
 
-		if (!trieConfig.isAllowOverlaps()) {
-			IntervalTree intervalTree = new IntervalTree((List<Intervalable>)(List<?>)collectedEmits);
-			intervalTree.removeOverlaps((List<Intervalable>) (List<?>) collectedEmits);
+			lastCollectedPosition = end;
 		}
 
-		return collectedEmits;
+		if (length - lastCollectedPosition > 1) {
+			sink.token(TokenSink.FRAGMENT, starts[lastCollectedPosition + 1], ends[length - 1], -1);
+		}
 	}
 
-	private void removePartialMatches(YiGeSeq searchText, List<Emit> collectedEmits) {
+	/**
+	 * Builds the <code>Token</code>s of a clause, finding the yi ge of each token from its offsets.
+	 */
+	private class TokenCollector implements TokenSink {
 
-//		long size = searchText.length();
+		private final YiGeSeq text;
 
-		List<Emit> removeEmits = new ArrayList<Emit>();
+		private final ParseContext context;
 
-		for (Emit emit : collectedEmits) {
-			// this is looking for non-alphabetic delimiters at the start and end - this should not be
-			// necessary with the reworking for Tibetan - but maybe
-//			if ( (emit.getStart() == 0 || ! Character.isAlphabetic( searchText.charAt(emit.getStart() - 1) ) ) 
-//			     && (emit.getEnd() + 1 == size || !Character.isAlphabetic(searchText.charAt(emit.getEnd() + 1) ) ) ) {
-//				continue;
-//			}
+		private final Collection<Token> tokens = new ArrayList<Token>();
 
-			removeEmits.add(emit);
+		TokenCollector(YiGeSeq text, ParseContext context) {
+			this.text = text;
+			this.context = context;
 		}
 
-		for (Emit removeEmit : removeEmits) {
-			collectedEmits.remove(removeEmit);
+		@Override
+		public void token(int kind, int startOffset, int endOffset, int keywordId) {
+			int length = text.length();
+			int start = Arrays.binarySearch(context.starts(), 0, length, startOffset);
+			int end = Arrays.binarySearch(context.ends(), 0, length, endOffset) + 1;
+
+			YiGeSeq fragment = text.subseq(start, end);
+
+			if (kind == MATCH) {
+				tokens.add(new MatchToken(fragment, new Emit(start, end - 1, keywordId, getKeyword(keywordId), getKeywordSources(keywordId))));
+			} else {
+				tokens.add(new FragmentToken(fragment));
+			}
 		}
 	}
 
-	private State getState(State currentState, YiGe yiGe) {
+	public Collection<Emit> parseText(YiGeSeq text) {
+		return parseText(text, new ParseContext());
+	}
 
-		State newCurrentState = currentState.nextState(yiGe);
+	public Collection<Emit> parseText(YiGeSeq text, ParseContext context) {
+		int length = text.length();
+		int[] ids = this.syllables.lookup(text, context.ids(length));
 
-		while (newCurrentState == null) {
-			currentState = currentState.failure();
-			newCurrentState = currentState.nextState(yiGe);
+		EmitBuffer emits = collectEmits(ids, length, context);
+		List<Emit> collectedEmits = new ArrayList<Emit>(emits.size());
+
+		for (int i = 0; i < emits.size(); i++) {
+			int keywordId = emits.getKeywordId(i);
+
+			collectedEmits.add(new Emit(emits.getStart(i), emits.getEnd(i), keywordId, getKeyword(keywordId), getKeywordSources(keywordId)));
 		}
 
-		return newCurrentState;
+		return collectedEmits;
 	}
 
-	private void checkForConstructedFailureStates() {
+	/**
+	 * @return the emits of the syllables <code>ids[0, length)</code> after the filtering configured,
+	 * in the buffer of the context
+	 */
+	private EmitBuffer collectEmits(int[] ids, int length, ParseContext context) {
 
-		if ( ! this.failureStatesConstructed ) {
-			constructFailureStates();
+		EmitBuffer collectedEmits = collectAllEmits(ids, length, context);
+
+		if (! this.allowOverlaps) {
+			// the emits come out of the automaton in order of end position
+			if (this.weightedSegmentation) {
+				collectedEmits.segment(context.segmenter(), length, this.keywordCosts, this.gapCost);
+			} else {
+				collectedEmits.removeOverlaps(context.overlapResolver());
+			}
 		}
+
+		return collectedEmits;
 	}
 
-	private void constructFailureStates() {
+	/**
+	 * @return the emits of the syllables <code>ids[0, length)</code>, overlapping or not, in order
+	 * of end position
+	 */
+	private EmitBuffer collectAllEmits(int[] ids, int length, ParseContext context) {
 
-		Queue<State> queue = new LinkedList<State>();
-//		Queue<State> queue = new LinkedBlockingDeque<State>();
+		EmitBuffer collectedEmits = context.emits();
+		collectedEmits.clear();
+		
+		if (this.compiled != null) {
+			parseCompiled(ids, length, collectedEmits);
+		} else if (this.dawg != null) {
+			parseDawg(ids, length, collectedEmits);
+		} else {
+			parseStates(ids, length, collectedEmits);
+		}
 
-		// First, set the fail state of all depth 1 states to the root state
-		for (State depthOneState : this.rootState.getStates()) {
-			depthOneState.setFailure(this.rootState);
-			queue.add(depthOneState);
+		if (this.onlyWholeWords) {
+			removePartialMatches(collectedEmits);
 		}
 
-		this.failureStatesConstructed = true;
+		return collectedEmits;
+	}
 
-		// Second, determine the fail state for all depth > 1 state
-		while (! queue.isEmpty()) {
-			State currentState = queue.remove();
+	private void parseStates(int[] ids, int length, EmitBuffer collectedEmits) {
+		State currentState = this.rootState;
 
-			for (YiGe transition : currentState.getTransitions()) {
-				State targetState = currentState.nextState(transition);
-				
-				if (targetState == null) {
-					// should figure out why a null state has been added to currentState
-					continue;
-				}
-				queue.add(targetState);
+		// case insensitivity needs nothing here since there is no case in Tibetan
+		for (int position = 0; position < length; position++) {
+			currentState = getState(currentState, ids[position]);
+			storeEmits(position, currentState, collectedEmits);
+		}
+	}
+
+	private void parseCompiled(int[] ids, int length, EmitBuffer collectedEmits) {
+		int currentState = Automaton.ROOT;
+
+		for (int position = 0; position < length; position++) {
+			currentState = this.compiled.nextState(currentState, DoubleArrayTrie.code(ids[position]));
 
-				State traceFailureState = currentState.failure();
-				while (traceFailureState.nextState(transition) == null) {
-					traceFailureState = traceFailureState.failure();
+			int emitState = this.compiled.keyword(currentState) >= 0 ? currentState : this.compiled.output(currentState);
+
+			while (emitState != Automaton.NONE) {
+				storeEmit(position, this.compiled.keyword(emitState), collectedEmits);
+				emitState = this.compiled.output(emitState);
+			}
+		}
+	}
+
+	/**
+	 * A DAWG has no failure links, since a state shared by several keywords has no single
+	 * longest proper suffix. Instead the keywords ending at each position are found by walking the
+	 * DAWG of the reversed keywords back from it, shortest first, and are stored longest first,
+	 * so that the emits are exactly those of the Aho-Corasick automaton in the same order.
+	 */
+	private void parseDawg(int[] ids, int length, EmitBuffer collectedEmits) {
+		for (int end = 0; end < length; end++) {
+			int first = collectedEmits.size();
+			int state = Dawg.ROOT;
+			int rank = 0;
+
+			for (int position = end; position >= 0; position--) {
+				int transition = this.dawg.transition(state, DoubleArrayTrie.code(ids[position]));
+
+				if (transition == Dawg.NONE) {
+					break;
 				}
-				State newFailureState = traceFailureState.nextState(transition);
-				
-				if (targetState == null || newFailureState == null) {
-					System.err.println("targetState: " + targetState + ",  newFailureState: " + newFailureState);
+
+				rank += this.dawg.rankOffset(transition);
+				state = this.dawg.target(transition);
+
+				if (this.dawg.isFinal(state)) {
+					collectedEmits.add(position, end, this.dawg.word(rank));
 				}
-				
-				targetState.setFailure(newFailureState);
-				targetState.addEmit(newFailureState.emit());
 			}
+
+			collectedEmits.reverse(first);
 		}
 	}
 
-	private void storeEmits(int position, State currentState, List<Emit> collectedEmits) {
-		Collection<YiGeSeq> emits = currentState.emit();
+	private void removePartialMatches(EmitBuffer collectedEmits) {
+		// this was looking for non-alphabetic delimiters at the start and end of each emit - this
+		// should not be necessary with the reworking for Tibetan - but maybe; with the check
+		// commented out every emit was removed, and still is
+		collectedEmits.clear();
+	}
 
-		if (emits != null && ! emits.isEmpty()) {
-			for (YiGeSeq emit : emits) {
-				collectedEmits.add(new Emit(position-emit.length()+1, position, emit));
-			}
+	private State getState(State currentState, int yiGe) {
+
+		if (yiGe == SyllableTable.NONE) {
+			// no state has a transition on a yi ge that is not in the dictionary
+			return this.rootState;
 		}
+
+		State newCurrentState = currentState.nextState(yiGe);
+
+		while (newCurrentState == null) {
+			currentState = currentState.failure();
+			newCurrentState = currentState.nextState(yiGe);
+		}
+
+		return newCurrentState;
+	}
+
+	private void storeEmits(int position, State currentState, EmitBuffer collectedEmits) {
+		State emitState = currentState.isTerminal() ? currentState : currentState.output();
+
+		while (emitState != null) {
+			storeEmit(position, emitState.getKeyword(), collectedEmits);
+			emitState = emitState.output();
+		}
+	}
+
+	private void storeEmit(int position, int keywordId, EmitBuffer collectedEmits) {
+		collectedEmits.add(position-this.keywordLengths[keywordId]+1, position, keywordId);
 	}
 
 }
@@ -0,0 +1,331 @@
+package org.tbrc.tools.wordbreak.ahocorasick.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Collects the keywords of a dictionary and freezes them into a <code>Trie</code>.
+ * <p>
+ * The builder is not thread safe and is spent once <code>build</code> has been called: the
+ * failure links are constructed over its <code>State</code> graph, which the trie then shares.
+ * The trie itself is immutable and may be used by any number of threads.
+ * <p>
+ * Several dictionaries can be layered in one trie by adding each as a source with
+ * <code>addSource</code> and its keywords with <code>addKeyword(keyword, sourceId)</code>; a
+ * keyword found in several of them is added once, with the bits of all its sources.
+ * <p>
+ * A keyword may be followed by a tab and its frequency in a corpus, as in the lists written by
+ * <code>CountWordsInDocs --frequencies</code>; the frequencies weigh the segmentation when the
+ * trie is built with <code>weightedSegmentation</code>. The keyword ends at the first tab in any
+ * case, but what follows is taken as its frequency only if it is all ASCII digits; anything else,
+ * such as a gloss or a further column, gives a frequency of 0.
+ *
+ * @author Chris
+ */
+public class TrieBuilder {
+
+	/** the sources of a keyword are the bits of an int */
+	public static final int MAX_SOURCES = 32;
+
+	private TrieConfig trieConfig;
+
+	private State rootState = new State();
+
+	/** the IDs of the yi ge of the keywords */
+	private SyllableTable syllables = new SyllableTable();
+
+	/** the keywords as added, indexed by keyword ID */
+	private List<String> keywords = new ArrayList<String>();
+
+	private int[] keywordLengths = new int[1024];
+
+	/** a bit for each source of each keyword, indexed by keyword ID */
+	private int[] keywordSources = new int[1024];
+
+	private int[] keywordFrequencies = new int[1024];
+
+	/** the names of the sources, indexed by source ID */
+	private List<String> sourceNames = new ArrayList<String>();
+
+	private boolean built = false;
+
+	public TrieBuilder(TrieConfig trieConfig) {
+		this.trieConfig = trieConfig;
+	}
+
+	public TrieBuilder() {
+		this(new TrieConfig());
+	}
+
+	public TrieBuilder caseInsensitive() {
+		this.trieConfig.setCaseInsensitive(true);
+		return this;
+	}
+
+	public TrieBuilder removeOverlaps() {
+		this.trieConfig.setAllowOverlaps(false);
+		return this;
+	}
+
+	public TrieBuilder onlyWholeWords() {
+		this.trieConfig.setOnlyWholeWords(true);
+		return this;
+	}
+
+	/**
+	 * Also resolve the failure links ahead of time into a <code>DfaTrie</code>.
+	 */
+	public TrieBuilder fullDfa() {
+		this.trieConfig.setFullDfa(true);
+		return this;
+	}
+
+	/**
+	 * Compile the keywords into a minimal <code>Dawg</code> rather than a <code>DoubleArrayTrie</code>;
+	 * smaller, but parsing takes O(n&middot;L) for keywords of at most L syllables rather than O(n).
+	 */
+	public TrieBuilder minimized() {
+		this.trieConfig.setMinimized(true);
+		return this;
+	}
+
+	/**
+	 * Remove overlaps by keeping the most probable segmentation of each clause, from the
+	 * frequencies of the keywords, rather than the longest matches first.
+	 */
+	public TrieBuilder weightedSegmentation() {
+		this.trieConfig.setWeightedSegmentation(true);
+		return this;
+	}
+
+	public int getKeywordCount() {
+		return this.keywords.size();
+	}
+
+	/**
+	 * Adds a dictionary to take keywords from.
+	 *
+	 * @return the ID of the source, its bit in the sources of an <code>Emit</code>
+	 */
+	public int addSource(String name) {
+		if (this.built) {
+			throw new IllegalStateException("the trie has already been built");
+		}
+
+		if (this.sourceNames.size() == MAX_SOURCES) {
+			throw new IllegalStateException("a trie has at most " + MAX_SOURCES + " sources");
+		}
+
+		this.sourceNames.add(name);
+
+		return this.sourceNames.size() - 1;
+	}
+
+	/**
+	 * Adds a keyword with no source. The keyword may be followed by a tab and its frequency.
+	 */
+	public TrieBuilder addKeyword(String keyword) {
+		return add(keyword, 0);
+	}
+
+	/**
+	 * Adds a keyword of the source returned by <code>addSource</code>.
+	 */
+	public TrieBuilder addKeyword(String keyword, int sourceId) {
+		if (sourceId < 0 || sourceId >= this.sourceNames.size()) {
+			throw new IllegalArgumentException("unknown source " + sourceId);
+		}
+
+		return add(keyword, 1 << sourceId);
+	}
+
+	/**
+	 * @return the frequency in the field, at most <code>Integer.MAX_VALUE</code>, or 0 if it is not
+	 * all digits
+	 */
+	private static int parseFrequency(String field) {
+		long frequency = 0;
+
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return 0;
+			}
+
+			frequency = Math.min(10 * frequency + (c - '0'), Integer.MAX_VALUE);
+		}
+
+		return (int) frequency;
+	}
+
+	private TrieBuilder add(String keyword, int sources) {
+		if (this.built) {
+			throw new IllegalStateException("the trie has already been built");
+		}
+
+		if (keyword == null || keyword.isEmpty()) {
+			return this;
+		}
+
+		int frequency = 0;
+		int tab = keyword.indexOf('\t');
+
+		if (tab >= 0) {
+			frequency = parseFrequency(keyword.substring(tab + 1).trim());
+			keyword = keyword.substring(0, tab);
+		}
+
+		State currentState = this.rootState;
+		int length = 0;
+
+		SyllableScanner scanner = new SyllableScanner(keyword);
+
+		while (scanner.next()) {
+			YiGe s = new YiGe(keyword.substring(scanner.start(), scanner.end()));
+
+			currentState = currentState.addState(this.syllables.intern(s));
+			length++;
+		}
+
+		// a line with no yi ge, e.g., a lone tsheg, would make the root emit an empty keyword
+		if (length == 0) {
+			return this;
+		}
+
+		// keywords that differ only in 'i, 'o or 'is endings share a state; the first one is kept,
+		// with the frequencies of all of them
+		if (currentState.isTerminal()) {
+			int keywordId = currentState.getKeyword();
+
+			this.keywordSources[keywordId] |= sources;
+			this.keywordFrequencies[keywordId] = (int) Math.min((long) this.keywordFrequencies[keywordId] + frequency, Integer.MAX_VALUE);
+			return this;
+		}
+
+		int keywordId = this.keywords.size();
+
+		if (keywordId == this.keywordLengths.length) {
+			this.keywordLengths = Arrays.copyOf(this.keywordLengths, keywordId * 2);
+			this.keywordSources = Arrays.copyOf(this.keywordSources, keywordId * 2);
+			this.keywordFrequencies = Arrays.copyOf(this.keywordFrequencies, keywordId * 2);
+		}
+
+		this.keywords.add(keyword);
+		this.keywordLengths[keywordId] = length;
+		this.keywordSources[keywordId] = sources;
+		this.keywordFrequencies[keywordId] = frequency;
+
+		currentState.setKeyword(keywordId);
+
+		return this;
+	}
+
+	/**
+	 * Freezes the keywords into a <code>Trie</code> that parses with a <code>DoubleArrayTrie</code>,
+	 * or a <code>DfaTrie</code> or a <code>Dawg</code> if so configured.
+	 */
+	public Trie build() {
+		return build(true);
+	}
+
+	/**
+	 * Freezes the keywords into a <code>Trie</code> that parses by walking the <code>State</code>
+	 * graph; slower than <code>build</code>, but there is nothing to compile.
+	 */
+	public Trie buildStateGraph() {
+		return build(false);
+	}
+
+	private Trie build(boolean compile) {
+		if (this.built) {
+			throw new IllegalStateException("the trie has already been built");
+		}
+
+		this.built = true;
+		this.syllables.freeze();
+
+		int[] lengths = Arrays.copyOf(this.keywordLengths, this.keywords.size());
+		int[] sources = Arrays.copyOf(this.keywordSources, this.keywords.size());
+		int[] frequencies = Arrays.copyOf(this.keywordFrequencies, this.keywords.size());
+		List<String> sourceNames = new ArrayList<String>(this.sourceNames);
+
+		if (compile && this.trieConfig.isMinimized()) {
+			// the State graph only served to find duplicate keywords
+			return new Trie(this.trieConfig, this.syllables, this.keywords, lengths, sources, sourceNames, frequencies, null, null, null, buildDawg());
+		}
+
+		constructFailureStates();
+
+		DoubleArrayTrie doubleArray = null;
+		Automaton compiled = null;
+
+		if (compile) {
+			doubleArray = new DoubleArrayTrie(this.rootState);
+			compiled = this.trieConfig.isFullDfa() ? new DfaTrie(doubleArray) : doubleArray;
+		}
+
+		return new Trie(this.trieConfig, this.syllables, this.keywords, lengths, sources, sourceNames, frequencies,
+				compile ? null : this.rootState, doubleArray, compiled, null);
+	}
+
+	/**
+	 * @return the DAWG of the keywords as sequences of syllable codes, reversed since the trie
+	 * matches the keywords ending at each position backwards
+	 */
+	private Dawg buildDawg() {
+		int[][] reversed = new int[this.keywords.size()][];
+
+		for (int keywordId = 0; keywordId < reversed.length; keywordId++) {
+			String keyword = this.keywords.get(keywordId);
+			int[] codes = new int[this.keywordLengths[keywordId]];
+			int i = codes.length;
+
+			SyllableScanner scanner = new SyllableScanner(keyword);
+
+			while (scanner.next()) {
+				int end = YiGe.normalizedEnd(keyword, scanner.start(), scanner.end());
+
+				codes[--i] = DoubleArrayTrie.code(this.syllables.lookup(keyword, scanner.start(), end));
+			}
+
+			reversed[keywordId] = codes;
+		}
+
+		return new Dawg(reversed);
+	}
+
+	private void constructFailureStates() {
+
+		Queue<State> queue = new LinkedList<State>();
+
+		// First, set the fail state of all depth 1 states to the root state
+		for (State depthOneState : this.rootState.getStates()) {
+			depthOneState.setFailure(this.rootState);
+			queue.add(depthOneState);
+		}
+
+		// Second, determine the fail state for all depth > 1 state
+		while (! queue.isEmpty()) {
+			State currentState = queue.remove();
+
+			for (int transition : currentState.getTransitions()) {
+				State targetState = currentState.nextState(transition);
+				queue.add(targetState);
+
+				State traceFailureState = currentState.failure();
+				while (traceFailureState.nextState(transition) == null) {
+					traceFailureState = traceFailureState.failure();
+				}
+				State newFailureState = traceFailureState.nextState(transition);
+
+				targetState.setFailure(newFailureState);
+				targetState.setOutput(newFailureState.isTerminal() ? newFailureState : newFailureState.output());
+			}
+		}
+	}
+
+}
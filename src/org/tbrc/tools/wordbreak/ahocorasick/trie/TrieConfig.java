@@ -8,6 +8,12 @@ public class TrieConfig {
 
     private boolean caseInsensitive = true;
 
+    private boolean fullDfa = false;
+
+    private boolean minimized = false;
+
+    private boolean weightedSegmentation = false;
+
     public boolean isAllowOverlaps() {
         return allowOverlaps;
     }
@@ -31,4 +37,32 @@ public class TrieConfig {
     public void setCaseInsensitive(boolean caseInsensitive) {
         this.caseInsensitive = caseInsensitive;
     }
+
+    public boolean isFullDfa() {
+        return fullDfa;
+    }
+
+    public void setFullDfa(boolean fullDfa) {
+        this.fullDfa = fullDfa;
+    }
+
+    public boolean isMinimized() {
+        return minimized;
+    }
+
+    public void setMinimized(boolean minimized) {
+        this.minimized = minimized;
+    }
+
+    /**
+     * @return whether overlaps are removed by keeping the most probable segmentation, from the
+     * frequencies of the keywords, rather than the longest matches first
+     */
+    public boolean isWeightedSegmentation() {
+        return weightedSegmentation;
+    }
+
+    public void setWeightedSegmentation(boolean weightedSegmentation) {
+        this.weightedSegmentation = weightedSegmentation;
+    }
 }
@@ -33,12 +33,17 @@ public class YiGe implements Comparable<Object> {
 
 
 
-	private String raw;
-	private String yiGe;
+	private final String raw;
+	private final String yiGe;
+	// the hash of the normalized form, so that yi ge differing only in their endings collide
+	private final int hash;
+	// the SyllableTable ID, -1 until interned
+	private int id = -1;
 
 	public YiGe(String yiGe) {
 		this.raw = yiGe;
 		this.yiGe = filterEndings(yiGe);
+		this.hash = this.yiGe.hashCode();
 	}
 	
 	public String filterEndings(String str) {
@@ -46,26 +51,44 @@ public class YiGe implements Comparable<Object> {
 			return "";
 		}
 
-		int len = str.length();
+		int end = normalizedEnd(str, 0, str.length());
+
+		return end == str.length() ? str : str.substring(0, end);
+	}
+
+	/**
+	 * The normalization of <code>filterEndings</code> over the yi ge <code>text[start, end)</code>,
+	 * without building a <code>String</code>.
+	 * 
+	 * @return the end of the yi ge once any 'i, 'o or 'is ending is removed
+	 */
+	public static int normalizedEnd(CharSequence text, int start, int end) {
+		int len = end - start;
 		
 		// if the token ends with "'is" then decrement token length by 3
 		if (len > 3) {
-			if (str.charAt(len - 3) == APOSTROPHE && str.charAt(len - 2) == TIB_I && str.charAt(len - 1) == TIB_S) {
-				str = str.substring(0, len - 3);
-				if (Trie.parsing) System.err.println("found 'is on " + str);
+			if (text.charAt(end - 3) == APOSTROPHE && text.charAt(end - 2) == TIB_I && text.charAt(end - 1) == TIB_S) {
+				return end - 3;
 			}
 		} 
 		
 		if (len > 2) { // if the token ends with "'i" or "'o" then decrement token length by 2
-			if (str.charAt(len - 2) == APOSTROPHE && (str.charAt(len - 1) == TIB_I || str.charAt(len - 1) == TIB_O)) {
-				str = str.substring(0, len - 2);
+			if (text.charAt(end - 2) == APOSTROPHE && (text.charAt(end - 1) == TIB_I || text.charAt(end - 1) == TIB_O)) {
+				return end - 2;
 			}
 		}
 		
-		return str;
+		return end;
 	}
 
 
+	/**
+	 * @return the yi ge with any 'i, 'o or 'is ending removed
+	 */
+	public String getNormalized() {
+		return yiGe;
+	}
+
     @Override
     public boolean equals(Object o) {
         
@@ -75,7 +98,12 @@ public class YiGe implements Comparable<Object> {
        
         YiGe other = (YiGe) o;
         
-        return yiGe.equals(other.toString());
+        return hash == other.hash && yiGe.equals(other.yiGe);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     @Override
@@ -87,7 +115,18 @@ public class YiGe implements Comparable<Object> {
         
         YiGe other = (YiGe) o;
         
-        return yiGe.compareTo(other.toString());
+        return yiGe.compareTo(other.yiGe);
+    }
+
+    /**
+     * @return the ID given to the yi ge by <code>SyllableTable.intern</code>, -1 if it has not been interned
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package org.tbrc.tools.wordbreak.ahocorasick.trie;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -23,10 +24,10 @@ public class YiGeSeq implements Iterable<YiGe>, Comparable<Object> {
 	 * This routine "parses" the String argument to produce a sequence of the constituent
 	 * yi ge that are present in the String.
 	 * <p>
-	 * A principal use of this routine is in <code>Trie.addKeyword</code> to build the 
-	 * dictionary used for wordbreaking; hence, the argument is named <code>keyword</code>. 
-	 * This routine may also be used to parse an input string for breaking into its sequence 
-	 * of yi ge.
+	 * This routine was first used to build the dictionary used for wordbreaking; hence, the
+	 * argument is named <code>keyword</code>. It may also be used to parse an input string into
+	 * its sequence of yi ge. The yi ge are found by a <code>SyllableScanner</code>, as in
+	 * <code>YiGeSeq(String)</code>.
 	 * 
 	 * @param keyword the Unicode Tibetan string to be chunked into yi ge
 	 * @param word a List<YiGe> to which the yi ge in keyword are added
@@ -39,12 +40,10 @@ public class YiGeSeq implements Iterable<YiGe>, Comparable<Object> {
 		}
 
 		// parse the keyword into a list of syllables using tsheg - rinchen pung shad
-		String[] strs = keyword.split(nonLetterRegEx);
+		SyllableScanner scanner = new SyllableScanner(keyword);
 
-		for (String s : strs) {
-			if (! s.isEmpty()) {
-				word.add(new YiGe(s));
-			}
+		while (scanner.next()) {
+			word.add(new YiGe(keyword.substring(scanner.start(), scanner.end())));
 		}
 
 		return word;
@@ -93,30 +92,85 @@ public class YiGeSeq implements Iterable<YiGe>, Comparable<Object> {
 			}
 		}
 		
+		/**
+		 * Removes the last yi ge returned from the sequence.
+		 *
+		 * @throws UnsupportedOperationException if the sequence is a <code>subseq</code> view, as
+		 * the offsets and the text of the sequence it was taken from would no longer line up
+		 */
 		@Override
 		public void remove() {
+			if (view) {
+				throw new UnsupportedOperationException("a subseq is read-only");
+			}
+
 			if (! removed) {
 				ix --;
 				seq.remove(ix);
 				removed = true;
+				// the offsets no longer line up with the yi ge
+				starts = null;
+				ends = null;
+				joined = null;
 			}
 		}
 	}
 
 	
-	// the original string
+	// the original string; a subseq shares it with the sequence it was taken from
 	protected String str;
 	// the resulting sequence of syllables
 	protected List<YiGe> seq = new ArrayList<YiGe>();
+	// the offsets in str of the yi ge, null if not known; yi ge i of this seq is at first + i
+	protected int[] starts;
+	protected int[] ends;
+	protected int first = 0;
+	// whether this is a subseq of another sequence, and so read-only
+	private boolean view = false;
+	// toString, built when first asked for
+	private String joined;
 	
 	public YiGeSeq(String str) {
 		this.str = str;
-		toYiGe(str, seq);
+
+		if (str == null || str.isEmpty()) {
+			return;
+		}
+
+		SyllableScanner scanner = new SyllableScanner(str);
+		starts = new int[8];
+		ends = new int[8];
+
+		while (scanner.next()) {
+			int i = seq.size();
+
+			if (i == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * i);
+				ends = Arrays.copyOf(ends, 2 * i);
+			}
+
+			starts[i] = scanner.start();
+			ends[i] = scanner.end();
+			seq.add(new YiGe(str.substring(starts[i], ends[i])));
+		}
 	}
 	
 	public YiGeSeq(List<YiGe> seq) {
 		this.seq = seq;
-		this.str = toString();
+	}
+
+	/**
+	 * A view of <code>parent</code> from yi ge <code>start</code> up to <code>end</code>: the
+	 * syllables and the source text are shared, nothing is copied. The view is read-only; it
+	 * is no longer valid once yi ge have been removed from <code>parent</code>.
+	 */
+	protected YiGeSeq(YiGeSeq parent, int start, int end) {
+		this.seq = parent.seq.subList(start, end);
+		this.str = parent.str;
+		this.starts = parent.starts;
+		this.ends = parent.ends;
+		this.first = parent.first + start;
+		this.view = true;
 	}
 	
 	public Iter iterator() {
@@ -146,6 +200,17 @@ public class YiGeSeq implements Iterable<YiGe>, Comparable<Object> {
         return true;
     }
 
+    @Override
+    public int hashCode() {
+        int h = 1;
+
+        for (YiGe yiGe : seq) {
+            h = 31 * h + yiGe.hashCode();
+        }
+
+        return h;
+    }
+
     @Override
     public int compareTo(Object o) {
         
@@ -179,20 +244,60 @@ public class YiGeSeq implements Iterable<YiGe>, Comparable<Object> {
         return comp;
     }
 	
+	/**
+	 * @return the yi ge joined by tsheg
+	 */
 	@Override
 	public String toString() {
-		return join(seq);
+		if (joined == null) {
+			joined = join(seq);
+		}
+
+		return joined;
+	}
+
+	/**
+	 * @return the yi ge as they are in the original string, with whatever punctuation lies
+	 * between them, as a slice of it; the joined yi ge if the original string is not known
+	 */
+	public CharSequence getText() {
+		if (starts == null) {
+			return toString();
+		}
+
+		if (seq.isEmpty()) {
+			return "";
+		}
+
+		return str.subSequence(getStartOffset(), getEndOffset());
+	}
+
+	/**
+	 * @return the offset in the original string of the first yi ge, -1 if not known
+	 */
+	public int getStartOffset() {
+		return starts == null || seq.isEmpty() ? -1 : starts[first];
+	}
+
+	/**
+	 * @return the offset in the original string after the last yi ge, -1 if not known
+	 */
+	public int getEndOffset() {
+		return ends == null || seq.isEmpty() ? -1 : ends[first + seq.size() - 1];
 	}
 	
 	public int length() {
 		return seq.size();
 	}
 	
+	/**
+	 * @return a read-only view of the yi ge from <code>start</code> up to <code>end</code>
+	 */
 	public YiGeSeq subseq(int start, int end) {
 		if (start < 0 || end > seq.size() || start > end) {
 			throw new IndexOutOfBoundsException("subseq with size: " + seq.size() + " start: " + start + " end: " + end);
 		}
 		
-		return new YiGeSeq(seq.subList(start, end));
+		return new YiGeSeq(this, start, end);
 	}
 }
@@ -0,0 +1,155 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+import org.tbrc.tools.wordbreak.utils.TibetanNormalizer;
+
+/**
+ * Checks <code>ClauseReader</code> on random texts, with and without line breaks, some longer than
+ * its window: the clauses must be those of the whole text split at once, each line normalized
+ * and the lines joined, and with a small maximum clause length they must stay within it, be cut
+ * after a tsheg or a space, and join into the same text.
+ * <p>
+ * Takes two optional parameters: the number of cases, 2000 by default, and the random seed.
+ * Exits with status 1 if any case fails.
+ */
+public class CheckClauseReader {
+
+	protected static final int CASES = 2000;
+
+	protected static final int MAX_TEXT_LENGTH = 30000;
+
+	/** the pieces of the texts, the first four more often; some are not NFC */
+	protected static final String[] PIECES = { "\u0F40", "\u0F41", "\u0F42\u0F72", "\u0F0B", "\u0F0D", "\u0F0D\u0F0D",
+			"\u0F14", " ", "\n", "\r\n", "\u0F73", "\u0F72\u0F71", "\u0F42\u0FB7", "\uD83D\uDE00" };
+
+	protected static String randomText(Random random, boolean lineBreaks) {
+		int length = random.nextInt(MAX_TEXT_LENGTH);
+		StringBuilder text = new StringBuilder();
+
+		while (text.length() < length) {
+			String piece = PIECES[random.nextInt(3) > 0 ? random.nextInt(4) : random.nextInt(PIECES.length)];
+
+			if (lineBreaks || piece.indexOf('\n') < 0) {
+				text.append(piece);
+			}
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * @return the clauses of the text split all at once
+	 */
+	protected static List<String> expected(String text) {
+		TibetanNormalizer normalizer = new TibetanNormalizer();
+		StringBuilder joined = new StringBuilder();
+
+		for (String line : text.split("\r\n|\r|\n", -1)) {
+			joined.append(normalizer.normalize(line));
+		}
+
+		List<String> clauses = new ArrayList<String>();
+
+		for (String clause : joined.toString().split("[\\u0F0D-\\u0F14]")) {
+			if (! clause.isEmpty()) {
+				clauses.add(clause);
+			}
+		}
+
+		return clauses;
+	}
+
+	protected static List<String> read(String text, int maxClauseLength) throws IOException {
+		ClauseReader reader = new ClauseReader(new StringReader(text), new TibetanNormalizer(), maxClauseLength);
+		List<String> clauses = new ArrayList<String>();
+
+		try {
+			String clause = null;
+			while ((clause = reader.nextClause()) != null) {
+				clauses.add(clause);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return clauses;
+	}
+
+	/**
+	 * @return why the case failed, null if it did not
+	 */
+	protected static String check(String text, int maxClauseLength) throws IOException {
+		List<String> expected = expected(text);
+
+		if (! expected.equals(read(text, ClauseReader.MAX_CLAUSE_LENGTH))) {
+			return "the clauses differ from those of the whole text";
+		}
+
+		Set<Integer> ends = new HashSet<Integer>();
+		StringBuilder expectedJoined = new StringBuilder();
+
+		for (String clause : expected) {
+			expectedJoined.append(clause);
+			ends.add(expectedJoined.length());
+		}
+
+		StringBuilder joined = new StringBuilder();
+
+		for (String clause : read(text, maxClauseLength)) {
+			joined.append(clause);
+
+			// normalizing may decompose a character into two after the clause is cut
+			if (clause.length() > 2 * maxClauseLength) {
+				return "a clause of " + clause.length() + " is longer than " + maxClauseLength;
+			}
+
+			if (! ends.contains(joined.length()) && clause.matches(".*[\\u0F0B ].+") && ! clause.matches(".*[\\u0F0B ]")) {
+				return "a clause cut at " + maxClauseLength + " does not end with a tsheg or a space";
+			}
+		}
+
+		if (! expectedJoined.toString().equals(joined.toString())) {
+			return "the clauses cut at " + maxClauseLength + " do not join into the text";
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int cases = args.length > 0 ? Integer.parseInt(args[0]) : CASES;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+		Random random = new Random(seed);
+		int failures = 0;
+
+		for (int i = 0; i < cases; i++) {
+			// half of the texts are a single line, longer than the window of the reader for most
+			String text = randomText(random, random.nextBoolean());
+			int maxClauseLength = 16 + random.nextInt(64);
+			String failure = check(text, maxClauseLength);
+
+			if (failure != null && failures++ < 10) {
+				System.err.println("Case " + i + ", " + text.length() + " characters: " + failure);
+			}
+		}
+
+		System.err.println(cases + " cases with seed " + seed + ", " + failures + " failed");
+
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+}
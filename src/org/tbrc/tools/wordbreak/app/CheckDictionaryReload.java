@@ -0,0 +1,146 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryHandle;
+
+/**
+ * Checks that a <code>DictionaryHandle</code> watching a dictionary does not swap in a file that
+ * is still being written: the file is rewritten in place, truncated first and then written a few
+ * lines at a time, more often than the handle checks it, while another thread records the keyword
+ * counts of the tries the handle gives. Only the counts of the whole old and new dictionaries may
+ * be seen, and the new one must be in use once the writing is done.
+ * <p>
+ * Takes one optional parameter: the number of rewrites, 5 by default. Exits with status 1 if a
+ * partial dictionary was swapped in.
+ */
+public class CheckDictionaryReload {
+
+	protected static final int REWRITES = 5;
+
+	protected static final long PERIOD_MILLIS = 20;
+
+	/** the pause between the chunks of a rewrite, shorter than the period */
+	protected static final long CHUNK_MILLIS = 5;
+
+	protected static final int CHUNK_LINES = 100;
+
+	protected static final String[] SYLLABLES = { "\u0F40", "\u0F41", "\u0F42", "\u0F44", "\u0F45",
+			"\u0F46", "\u0F47", "\u0F49", "\u0F4F", "\u0F50" };
+
+	/**
+	 * @return the <code>n</code>-th keyword, four syllables written in base 10
+	 */
+	protected static String keyword(int n) {
+		StringBuilder keyword = new StringBuilder();
+
+		for (int i = 0; i < 4; i++) {
+			if (i > 0) {
+				keyword.append('\u0F0B');
+			}
+
+			keyword.append(SYLLABLES[n % 10]);
+			n /= 10;
+		}
+
+		return keyword.toString();
+	}
+
+	protected static void write(File file, int keywords, long chunkMillis) throws IOException, InterruptedException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+		try {
+			for (int i = 0; i < keywords; i++) {
+				writer.write(keyword(i) + "\n");
+
+				if ((i + 1) % CHUNK_LINES == 0 && chunkMillis > 0) {
+					writer.flush();
+					Thread.sleep(chunkMillis);
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int rewrites = args.length > 0 ? Integer.parseInt(args[0]) : REWRITES;
+
+		File file = File.createTempFile("reload", ".txt");
+		file.deleteOnExit();
+		write(file, 1000, 0);
+
+		final DictionaryHandle dict = new DictionaryHandle(file);
+		final Set<Integer> seen = new TreeSet<Integer>();
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		Thread observer = new Thread() {
+			@Override
+			public void run() {
+				while (! done.get()) {
+					int count = dict.getVersion().getKeywordCount();
+
+					synchronized (seen) {
+						seen.add(count);
+					}
+
+					Thread.yield();
+				}
+			}
+		};
+
+		dict.watch(PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+		observer.start();
+
+		boolean failed = false;
+		int keywords = 1000;
+
+		for (int i = 0; i < rewrites; i++) {
+			int previous = keywords;
+			keywords = i % 2 == 0 ? 3000 : 1000;
+			write(file, keywords, CHUNK_MILLIS);
+
+			// long enough for two checks to see the file the same
+			Thread.sleep(10 * PERIOD_MILLIS);
+
+			int current = dict.getVersion().getKeywordCount();
+
+			synchronized (seen) {
+				seen.remove(previous);
+				seen.remove(keywords);
+
+				if (! seen.isEmpty() || current != keywords) {
+					System.err.println("Rewrite " + i + " to " + keywords + " keywords: partial versions with " + seen
+							+ " keywords, " + current + " in use at the end");
+					failed = true;
+				}
+
+				seen.clear();
+			}
+		}
+
+		done.set(true);
+		observer.join();
+		dict.close();
+
+		System.err.println(rewrites + " rewrites, " + dict.getVersion());
+
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryHandle;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Lattice;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TokenSink;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieConfig;
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+
+/**
+ * Checks <code>Lattice.bestPaths</code> on the clauses of a text: the paths come in order of
+ * cost, no two of them put the token boundaries at the same yi ge, and for lattices of at most
+ * <code>MAX_ENUMERATED</code> yi ge their costs are the least of all the segmentations, found by
+ * enumerating every path.
+ * <p>
+ * Takes two parameters and an optional third: the dictionary, with frequencies, a text, and the
+ * number of paths, 5 by default. Exits with status 1 if any clause fails.
+ */
+public class CheckLatticePaths {
+
+	protected static final int K = 5;
+
+	protected static final int MAX_ENUMERATED = 14;
+
+	/** collects the offsets where the tokens of a path start */
+	protected static class Boundaries implements TokenSink {
+		protected final Set<Integer> starts = new HashSet<Integer>();
+
+		@Override
+		public void token(int kind, int start, int end, int keywordId) {
+			starts.add(start);
+		}
+	}
+
+	/**
+	 * Adds the least cost of each set of boundaries to <code>costs</code>, walking back from node
+	 * <code>v</code>; <code>nextEdge</code> is the edge taken out of <code>v</code>, -1 at the last node.
+	 */
+	protected static void enumerate(Lattice lattice, int v, int nextEdge, double cost, String boundaries, Map<String, Double> costs) {
+		if (v == 0) {
+			Double known = costs.get(boundaries);
+
+			if (known == null || cost < known) {
+				costs.put(boundaries, cost);
+			}
+
+			return;
+		}
+
+		for (int e = lattice.getFirstEdge(v); e < lattice.getFirstEdge(v + 1); e++) {
+			// two yi ge left out in a row are one fragment
+			boolean boundary = nextEdge >= 0 && ! (lattice.getKeywordId(e) < 0 && lattice.getKeywordId(nextEdge) < 0);
+
+			enumerate(lattice, lattice.getEdgeFrom(e), e, cost + lattice.getCost(e), boundary ? v + " " + boundaries : boundaries, costs);
+		}
+	}
+
+	protected static String check(Lattice lattice, int k) {
+		int paths = lattice.bestPaths(k);
+		Set<Set<Integer>> seen = new HashSet<Set<Integer>>();
+
+		for (int r = 0; r < paths; r++) {
+			Boundaries boundaries = new Boundaries();
+			lattice.tokenize(r, boundaries);
+
+			if (! seen.add(boundaries.starts)) {
+				return "path " + r + " repeats the boundaries of an earlier one";
+			}
+
+			if (r > 0 && lattice.getPathCost(r) < lattice.getPathCost(r - 1)) {
+				return "path " + r + " costs less than path " + (r - 1);
+			}
+		}
+
+		if (lattice.getLength() == 0 || lattice.getLength() > MAX_ENUMERATED) {
+			return null;
+		}
+
+		Map<String, Double> costs = new HashMap<String, Double>();
+		enumerate(lattice, lattice.getLength(), -1, 0, "", costs);
+
+		List<Double> expected = new ArrayList<Double>(costs.values());
+		Collections.sort(expected);
+
+		if (paths != Math.min(k, expected.size())) {
+			return paths + " paths found of " + expected.size() + " segmentations";
+		}
+
+		for (int r = 0; r < paths; r++) {
+			if (Math.abs(expected.get(r) - lattice.getPathCost(r)) > 1e-9) {
+				return "path " + r + " costs " + lattice.getPathCost(r) + " instead of " + expected.get(r);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param args
+	 * @throws IOException 
+	 */
+	public static void main(String[] args) throws IOException {
+		int k = args.length > 2 ? Integer.parseInt(args[2]) : K;
+
+		TrieConfig config = new TrieConfig();
+		config.setWeightedSegmentation(true);
+
+		DictionaryHandle dict = new DictionaryHandle(new File(args[0]), config);
+		Trie trie = dict.get();
+		dict.close();
+
+		ClauseReader reader = new ClauseReader(new FileInputStream(args[1]).getChannel());
+		ParseContext context = new ParseContext();
+		int clauses = 0;
+		int failures = 0;
+
+		try {
+			String clause = null;
+			while ((clause = reader.nextClause()) != null) {
+				clauses++;
+
+				String failure = check(trie.lattice(clause, context), k);
+
+				if (failure != null && failures++ < 10) {
+					System.err.println(clause + "\n    " + failure);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		System.err.println(clauses + " clauses, " + failures + " failed");
+
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+}
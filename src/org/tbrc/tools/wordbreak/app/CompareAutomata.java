@@ -0,0 +1,138 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Automaton;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Dawg;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Emit;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DfaTrie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieConfig;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.YiGeSeq;
+
+/**
+ * Reports the memory/speed tradeoff between walking the failure links of the
+ * <code>State</code> graph or the <code>DoubleArrayTrie</code>, the precomputed
+ * transitions of the <code>DfaTrie</code>, and the backward walks of the minimized <code>Dawg</code>,
+ * which take O(n&middot;L) for a text of n syllables and keywords of at most L syllables rather
+ * than the O(n) of the others.
+ * <p>
+ * Takes two parameters: the dictionary and a text to parse. Exits with status 1 if the automata
+ * do not all emit the same keywords at the same positions.
+ */
+public class CompareAutomata {
+
+	protected static final int ROUNDS = 5;
+
+	protected static Trie load(String dictFilePath, boolean compile, boolean fullDfa, boolean minimized) throws IOException {
+		TrieConfig config = new TrieConfig();
+		config.setAllowOverlaps(true);
+		config.setFullDfa(fullDfa);
+		config.setMinimized(minimized);
+
+		TrieBuilder dict = new TrieBuilder(config);
+
+		BufferedReader dictReader = new BufferedReader(new InputStreamReader(new FileInputStream(dictFilePath), "UTF-8"));
+		try {
+			String entryStr = null;
+			while ((entryStr = dictReader.readLine()) != null) {
+				dict.addKeyword(entryStr);
+			}
+		} finally {
+			dictReader.close();
+		}
+
+		return compile ? dict.build() : dict.buildStateGraph();
+	}
+
+	/**
+	 * @return a checksum of the emits, the same whatever their order within the text
+	 */
+	protected static long report(String name, String dictFilePath, List<YiGeSeq> clauses, int yiGeCount, boolean compile, boolean fullDfa, boolean minimized) throws IOException {
+		long startBuild = System.currentTimeMillis();
+		Trie dict = load(dictFilePath, compile, fullDfa, minimized);
+		long endBuild = System.currentTimeMillis();
+
+		int emits = 0;
+		long best = Long.MAX_VALUE;
+		long checksum = 0;
+		long offset = 0;
+
+		for (YiGeSeq clause : clauses) {
+			for (Emit emit : dict.parseText(clause)) {
+				checksum += (((offset + emit.getStart()) * 31 + emit.getEnd()) * 31 + emit.getKeywordId()) * 0x9E3779B97F4A7C15L;
+			}
+
+			offset += clause.length();
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			emits = 0;
+			long start = System.nanoTime();
+
+			for (YiGeSeq clause : clauses) {
+				emits += dict.parseText(clause).size();
+			}
+
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		Automaton automaton = dict.getAutomaton();
+		Dawg dawg = dict.getDawg();
+		String size = automaton == null ? "n/a" : (automaton.getSizeInBytes() / 1024) + " KB";
+		String transitions = automaton instanceof DfaTrie ? ", " + ((DfaTrie) automaton).getTransitionCount() + " precomputed transitions" : "";
+
+		if (dawg != null) {
+			size = (dawg.getSizeInBytes() / 1024) + " KB";
+			transitions = ", " + dawg.getStateCount() + " states, " + dawg.getTransitionCount() + " transitions";
+		}
+
+		System.err.println(name + ": built in " + (endBuild - startBuild) + " ms, " + size + transitions);
+		System.err.println("    " + emits + " emits in " + (best / 1000000) + " ms, " + (long) (yiGeCount / (best / 1e9)) + " syllables/sec");
+
+		if (dawg != null) {
+			System.err.println("    O(n*L) parse: walks back up to L = " + dawg.getMaxWordLength()
+					+ " syllables from each of the n positions, where the others are O(n)");
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		Test test = new Test();
+
+		List<YiGeSeq> clauses = new ArrayList<YiGeSeq>();
+		int yiGeCount = 0;
+
+		for (String clause : test.getClauses(args[1])) {
+			YiGeSeq seq = new YiGeSeq(clause);
+
+			clauses.add(seq);
+			yiGeCount += seq.length();
+		}
+
+		System.err.println(clauses.size() + " clauses, " + yiGeCount + " syllables\n");
+
+		long expected = report("State graph", args[0], clauses, yiGeCount, false, false, false);
+		boolean differ = false;
+
+		differ |= report("DoubleArrayTrie", args[0], clauses, yiGeCount, true, false, false) != expected;
+		differ |= report("DfaTrie", args[0], clauses, yiGeCount, true, true, false) != expected;
+		differ |= report("Dawg", args[0], clauses, yiGeCount, true, false, true) != expected;
+
+		if (differ) {
+			System.err.println("\nThe emits differ from those of the State graph");
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.tbrc.tools.wordbreak.ahocorasick.interval.Interval;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.IntervalTree;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.Intervalable;
+import org.tbrc.tools.wordbreak.ahocorasick.interval.OverlapResolver;
+
+/**
+ * Checks that <code>OverlapResolver</code> keeps the same intervals as
+ * <code>IntervalTree.removeOverlaps</code>, both for a list and for the arrays of the emits, on
+ * a few sets of intervals that share an end and on random sets of distinct intervals, ordered by
+ * end position and then longest first, as the automaton emits them.
+ * <p>
+ * Takes two optional parameters: the number of cases, 300000 by default, and the random seed.
+ * Exits with status 1 if any case differs.
+ */
+public class CompareOverlapResolvers {
+
+	protected static final int CASES = 300000;
+
+	protected static final int MAX_INTERVALS = 30;
+
+	protected static final int MAX_TEXT_LENGTH = 40;
+
+	protected static final int MAX_INTERVAL_SIZE = 8;
+
+	/** by end position, then the longer first, as the emits of a position are */
+	protected static final Comparator<Interval> EMIT_ORDER = new Comparator<Interval>() {
+		@Override
+		public int compare(Interval a, Interval b) {
+			return a.getEnd() != b.getEnd() ? a.getEnd() - b.getEnd() : a.getStart() - b.getStart();
+		}
+	};
+
+	/** intervals that share an end, which the random ones may miss */
+	protected static final int[][] FIXED_CASES = {
+		{ 0, 3, 2, 3 },
+		{ 2, 3, 0, 3, 1, 3, 3, 3 },
+		{ 0, 1, 1, 4, 3, 4, 4, 6, 5, 6 },
+		{ 0, 2, 1, 2, 2, 5, 4, 5, 5, 5 },
+	};
+
+	protected static List<Interval> fixedIntervals(int[] bounds) {
+		List<Interval> intervals = new ArrayList<Interval>();
+
+		for (int i = 0; i < bounds.length; i += 2) {
+			intervals.add(new Interval(bounds[i], bounds[i + 1]));
+		}
+
+		Collections.sort(intervals, EMIT_ORDER);
+
+		return intervals;
+	}
+
+	protected static List<Interval> randomIntervals(Random random) {
+		int count = random.nextInt(MAX_INTERVALS);
+		int length = 1 + random.nextInt(MAX_TEXT_LENGTH);
+
+		Set<String> seen = new HashSet<String>();
+		List<Interval> intervals = new ArrayList<Interval>();
+
+		for (int i = 0; i < count; i++) {
+			int start = random.nextInt(length);
+			int end = Math.min(length - 1, start + random.nextInt(MAX_INTERVAL_SIZE));
+
+			if (seen.add(start + ":" + end)) {
+				intervals.add(new Interval(start, end));
+			}
+		}
+
+		Collections.sort(intervals, EMIT_ORDER);
+
+		return intervals;
+	}
+
+	protected static String expected(List<Interval> intervals) {
+		List<Intervalable> kept = new ArrayList<Intervalable>(intervals);
+
+		if (! kept.isEmpty()) {
+			new IntervalTree(kept).removeOverlaps(kept);
+		}
+
+		return kept.toString();
+	}
+
+	protected static String resolveArrays(OverlapResolver resolver, List<Interval> intervals) {
+		int count = intervals.size();
+		int[] starts = new int[count];
+		int[] ends = new int[count];
+		int[] values = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			starts[i] = intervals.get(i).getStart();
+			ends[i] = intervals.get(i).getEnd();
+			values[i] = i;
+		}
+
+		List<Interval> kept = new ArrayList<Interval>();
+		int keptCount = resolver.removeOverlaps(starts, ends, values, count);
+
+		for (int i = 0; i < keptCount; i++) {
+			Interval interval = intervals.get(values[i]);
+
+			if (interval.getStart() != starts[i] || interval.getEnd() != ends[i]) {
+				return "values out of step at " + i;
+			}
+
+			kept.add(interval);
+		}
+
+		return kept.toString();
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int cases = args.length > 0 ? Integer.parseInt(args[0]) : CASES;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+		Random random = new Random(seed);
+		OverlapResolver resolver = new OverlapResolver();
+		int mismatches = 0;
+
+		for (int i = 0; i < FIXED_CASES.length + cases; i++) {
+			List<Interval> intervals = i < FIXED_CASES.length ? fixedIntervals(FIXED_CASES[i]) : randomIntervals(random);
+			String expected = expected(intervals);
+			String list = resolver.removeOverlaps(new ArrayList<Interval>(intervals)).toString();
+			String arrays = resolveArrays(resolver, intervals);
+
+			if (! expected.equals(list) || ! expected.equals(arrays)) {
+				if (mismatches++ < 10) {
+					System.err.println("Intervals: " + intervals + "\n    IntervalTree: " + expected
+							+ "\n    OverlapResolver list: " + list + "\n    OverlapResolver arrays: " + arrays);
+				}
+			}
+		}
+
+		System.err.println(FIXED_CASES.length + " fixed and " + cases + " random cases with seed " + seed + ", " + mismatches + " mismatches");
+
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryImage;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+
+/**
+ * Compiles a dictionary, one keyword per line, into a <code>DictionaryImage</code>. Test and
+ * CountWordsInDocs map such an image directly when given one in place of the dictionary.
+ * <p>
+ * Given several dictionaries, layers them in one image: each is a source named after its file,
+ * and the <code>Emit</code> of a keyword has the bits of the dictionaries it is in.
+ * <p>
+ * Takes the dictionaries, then the image to write.
+ */
+public class CompileDict {
+
+	protected static Trie layer(String[] dictFilePaths) throws IOException {
+		TrieBuilder dict = new TrieBuilder();
+
+		for (String dictFilePath : dictFilePaths) {
+			int sourceId = dict.addSource(new File(dictFilePath).getName());
+
+			BufferedReader dictReader = new BufferedReader(new InputStreamReader(new FileInputStream(dictFilePath), "UTF-8"));
+			try {
+				String entryStr = null;
+				while ((entryStr = dictReader.readLine()) != null) {
+					dict.addKeyword(entryStr, sourceId);
+				}
+			} finally {
+				dictReader.close();
+			}
+		}
+
+		return dict.build();
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: CompileDict dictionary... image");
+			System.exit(1);
+		}
+
+		long start = System.currentTimeMillis();
+
+		Trie dict;
+
+		if (args.length == 2) {
+			Test test = new Test();
+			dict = test.initDict(args[0]);
+		} else {
+			String[] dictFilePaths = new String[args.length - 1];
+			System.arraycopy(args, 0, dictFilePaths, 0, dictFilePaths.length);
+			dict = layer(dictFilePaths);
+		}
+
+		long compiled = System.currentTimeMillis();
+
+		File image = new File(args[args.length - 1]);
+		DictionaryImage.write(dict, image);
+
+		long written = System.currentTimeMillis();
+
+		System.err.println("Compiled " + dict.getKeywordCount() + " keywords in " + (compiled - start) + " ms");
+
+		for (int sourceId = 0; sourceId < dict.getSourceCount(); sourceId++) {
+			int count = 0;
+
+			for (int keywordId = 0; keywordId < dict.getKeywordCount(); keywordId++) {
+				if ((dict.getKeywordSources(keywordId) & 1 << sourceId) != 0) {
+					count++;
+				}
+			}
+
+			System.err.println("    " + dict.getSourceName(sourceId) + ": " + count + " keywords");
+		}
+
+		System.err.println("Wrote " + image.length() / 1024 + " KB to " + image + " in " + (written - compiled) + " ms");
+
+		start = System.currentTimeMillis();
+		DictionaryImage.load(image);
+		System.err.println("Loading the image takes " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+}
@@ -9,19 +9,49 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryHandle;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryImage;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.FragmentNgrams;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.MappedText;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
 import org.tbrc.tools.wordbreak.ahocorasick.trie.Token;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TokenSink;
 import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieConfig;
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+import org.tbrc.tools.wordbreak.utils.IntLongMap;
+import org.tbrc.tools.wordbreak.utils.SortTibetanUnicodeStrings;
+import org.tbrc.tools.wordbreak.utils.SpaceSavingCounter;
+import org.tbrc.tools.wordbreak.utils.TibetanNormalizer;
 
 public class CountWordsInDocs {
-	
-	protected static String clausePuct = "[\u0F0D-\u0F14]";
 
+	protected static SortTibetanUnicodeStrings SORTER = new SortTibetanUnicodeStrings();
+
+	/** the n-grams of each length counted by each thread */
+	protected static final int NGRAM_CAPACITY = 1 << 14;
+
+	/** the number of distinct fragments counted per thread, so that their memory is bounded */
+	protected static final int FRAGMENT_CAPACITY = 1 << 16;
+
+	/** fragments longer than this, in chars, are not counted */
+	protected static final int FRAGMENT_LENGTH = 64;
+
+	/** the n-grams of each length written */
+	protected static final int NGRAM_TOP = 1000;
 
 	//=========== UTILITIES
 
@@ -64,6 +94,12 @@ public class CountWordsInDocs {
 
 		try {
 			File dictFile = new File(dictFilePath);
+
+			// a dictionary compiled by CompileDict is mapped rather than built
+			if (DictionaryImage.isImage(dictFile)) {
+				return DictionaryImage.load(dictFile);
+			}
+
 			FileInputStream dictStream = new FileInputStream(dictFile);
 			InputStreamReader dictStreamReader = new InputStreamReader(dictStream, "UTF-8");
 			
@@ -87,7 +123,7 @@ public class CountWordsInDocs {
 	}
 
 	protected Trie initDict(BufferedReader dictReader) {
-		Trie dict = new Trie();
+		TrieBuilder dict = new TrieBuilder();
 
 		String entryStr = null;
 		try {
@@ -99,36 +135,31 @@ public class CountWordsInDocs {
 			ex.printStackTrace();
 		}
 
-		return dict;
+		return dict.build();
 	}
 
 
 	//=========== PROCESS TEXT
 	
+	protected ClauseReader openClauses(String textFilePath) throws IOException {
+		return openClauses(textFilePath, new TibetanNormalizer());
+	}
+
+	protected ClauseReader openClauses(String textFilePath, TibetanNormalizer normalizer) throws IOException {
+		return new ClauseReader(new FileInputStream(textFilePath).getChannel(), normalizer);
+	}
+
 	protected List<String> getClauses(String textFilePath) {
-		BufferedReader textReader = null;
+		ClauseReader textReader = null;
 		List<String> clauses = new ArrayList<String>();
 
 		try {
-			File textFile = new File(textFilePath);
-			FileInputStream textStream = new FileInputStream(textFile);
-			InputStreamReader textStreamReader = new InputStreamReader(textStream, "UTF-8");
+			textReader = openClauses(textFilePath);
 			
-			textReader = new BufferedReader(textStreamReader);
-			
-			StringBuilder sb = new StringBuilder();
-			String line = null;
-			while ( (line = textReader.readLine()) != null ) {
-				line = Normalizer.normalize(line, Normalizer.Form.NFC);
-				sb.append(line);
+			String clause = null;
+			while ( (clause = textReader.nextClause()) != null ) {
+				clauses.add(clause);
 			}
-			
-			String content = sb.toString();
-			
-			String[] pieces = content.split(clausePuct);
-
-			clauses = Arrays.asList(pieces);
-			
 		} catch (IOException ex) {
 			ex.printStackTrace();
 		} finally {
@@ -145,19 +176,234 @@ public class CountWordsInDocs {
 	}
 	
 	protected Collection<Token> parse(String textFilePath, Trie dict) {
-		
-		List<String> clauses = getClauses(textFilePath);
+		return parse(textFilePath, dict, new ParseContext());
+	}
 
+	/**
+	 * Tokenizes the text clause by clause as it is read.
+	 */
+	protected Collection<Token> parse(String textFilePath, Trie dict, ParseContext context) {
+		ClauseReader textReader = null;
 		Collection<Token> tokens = new ArrayList<Token>();
-		
-		for (String clause : clauses) {
-			Collection<Token> clauseTokens = dict.tokenize(clause);
-			tokens.addAll(clauseTokens);
+
+		try {
+			textReader = openClauses(textFilePath);
+			
+			String clause = null;
+			while ( (clause = textReader.nextClause()) != null ) {
+				Collection<Token> clauseTokens = dict.tokenize(clause, context);
+				tokens.addAll(clauseTokens);
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textReader != null) {
+					textReader.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
 		}
 		
 		return tokens;
 	}
 	
+	/**
+	 * Counts the tokens of a text through a <code>TokenSink</code>, without building them.
+	 */
+	protected static class WordCounter implements TokenSink {
+
+		protected int wordCount = 0;
+
+		/**
+		 * Called with each clause before its tokens.
+		 */
+		protected void startClause(CharSequence clause) {
+		}
+
+		@Override
+		public void token(int kind, int startOffset, int endOffset, int keywordId) {
+			wordCount++;
+		}
+	}
+
+	/**
+	 * The number of times each keyword and each unmatched fragment was found, and the most frequent
+	 * n-grams of the fragments; each is null if not counted.
+	 */
+	protected static class Frequencies {
+
+		protected final IntLongMap words;
+
+		protected final SpaceSavingCounter fragments;
+
+		protected final FragmentNgrams ngrams;
+
+		public Frequencies(boolean countWords, boolean countNgrams) {
+			this.words = countWords ? new IntLongMap() : null;
+			this.fragments = countWords ? new SpaceSavingCounter(FRAGMENT_CAPACITY, FRAGMENT_LENGTH) : null;
+			this.ngrams = countNgrams ? new FragmentNgrams(NGRAM_CAPACITY) : null;
+		}
+
+		protected void addAll(Frequencies other) {
+			if (words != null) {
+				words.addAll(other.words);
+				fragments.addAll(other.fragments);
+			}
+
+			if (ngrams != null) {
+				ngrams.addAll(other.ngrams);
+			}
+		}
+	}
+
+	/**
+	 * The frequencies of each worker thread, so that the threads count without locking; they are
+	 * merged once all the texts are done.
+	 */
+	protected static class WorkerFrequencies extends ThreadLocal<Frequencies> {
+
+		protected final List<Frequencies> all = Collections.synchronizedList(new ArrayList<Frequencies>());
+
+		protected final boolean countWords;
+
+		protected final boolean countNgrams;
+
+		public WorkerFrequencies(boolean countWords, boolean countNgrams) {
+			this.countWords = countWords;
+			this.countNgrams = countNgrams;
+		}
+
+		@Override
+		protected Frequencies initialValue() {
+			Frequencies frequencies = new Frequencies(countWords, countNgrams);
+			all.add(frequencies);
+			return frequencies;
+		}
+
+		protected Frequencies merge() {
+			Frequencies merged = new Frequencies(countWords, countNgrams);
+
+			synchronized (all) {
+				for (Frequencies frequencies : all) {
+					merged.addAll(frequencies);
+				}
+			}
+
+			return merged;
+		}
+	}
+
+	/**
+	 * Counts the tokens of a text as <code>WordCounter</code> does and adds each to the
+	 * frequencies of the thread.
+	 */
+	protected static class FrequencyCounter extends WordCounter {
+
+		protected final Frequencies frequencies;
+
+		protected CharSequence clause;
+
+		public FrequencyCounter(Frequencies frequencies) {
+			this.frequencies = frequencies;
+		}
+
+		@Override
+		protected void startClause(CharSequence clause) {
+			this.clause = clause;
+		}
+
+		@Override
+		public void token(int kind, int startOffset, int endOffset, int keywordId) {
+			wordCount++;
+
+			if (kind == MATCH) {
+				if (frequencies.words != null) {
+					frequencies.words.add(keywordId, 1);
+				}
+			} else {
+				if (frequencies.fragments != null) {
+					frequencies.fragments.add(clause, startOffset, endOffset);
+				}
+
+				if (frequencies.ngrams != null) {
+					frequencies.ngrams.add(clause, startOffset, endOffset);
+				}
+			}
+		}
+	}
+
+	protected int countWords(String textFilePath, Trie dict, ParseContext context) {
+		return countWords(textFilePath, dict, context, new TibetanNormalizer());
+	}
+
+	/**
+	 * @return the number of tokens of the text, as <code>parse(...).size()</code>
+	 */
+	protected int countWords(String textFilePath, Trie dict, ParseContext context, TibetanNormalizer normalizer) {
+		return countWords(textFilePath, dict, context, normalizer, new WordCounter());
+	}
+
+	protected int countWords(String textFilePath, Trie dict, ParseContext context, TibetanNormalizer normalizer, WordCounter counter) {
+		ClauseReader textReader = null;
+
+		try {
+			textReader = openClauses(textFilePath, normalizer);
+			
+			String clause = null;
+			while ( (clause = textReader.nextClause()) != null ) {
+				counter.startClause(clause);
+				dict.tokenize(clause, counter, context);
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textReader != null) {
+					textReader.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+		
+		return counter.wordCount;
+	}
+
+	/**
+	 * @return the number of tokens of the text, as <code>countWords</code>, reading the text with
+	 * a <code>MappedText</code>
+	 */
+	protected int countWordsMapped(String textFilePath, Trie dict, ParseContext context, TibetanNormalizer normalizer) {
+		return countWordsMapped(textFilePath, dict, context, normalizer, new WordCounter());
+	}
+
+	protected int countWordsMapped(String textFilePath, Trie dict, ParseContext context, TibetanNormalizer normalizer, WordCounter counter) {
+		MappedText text = null;
+
+		try {
+			text = new MappedText(new File(textFilePath), dict.getSyllableTable(), normalizer);
+
+			while (text.nextClause(context)) {
+				counter.startClause(text.getChars());
+				dict.tokenize(text, counter, context);
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (text != null) {
+					text.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+		
+		return counter.wordCount;
+	}
+	
 	protected void writeTokens(String outFilePath, List<Token> tokens) {
 		BufferedWriter textWriter = null;
 
@@ -187,20 +433,272 @@ public class CountWordsInDocs {
 	}
 
 	/**
+	 * @return the path of the fragment frequencies: <code>-fragments</code> inserted before the
+	 * extension of the keyword frequencies
+	 */
+	protected static String fragmentsPath(String frequenciesPath) {
+		int dot = frequenciesPath.lastIndexOf('.');
+
+		if (dot <= frequenciesPath.lastIndexOf(File.separatorChar)) {
+			return frequenciesPath + "-fragments";
+		}
+
+		return frequenciesPath.substring(0, dot) + "-fragments" + frequenciesPath.substring(dot);
+	}
+
+	protected void writeFrequencies(String frequenciesPath, Frequencies frequencies, Trie dict) {
+		Map<String, Long> words = new HashMap<String, Long>(2 * frequencies.words.size());
+
+		for (int slot = 0; slot < frequencies.words.capacity(); slot++) {
+			int keywordId = frequencies.words.keyAt(slot);
+
+			if (keywordId != IntLongMap.EMPTY) {
+				words.put(dict.getKeywordText(keywordId), frequencies.words.valueAt(slot));
+			}
+		}
+
+		writeFrequencies(frequenciesPath, words);
+		writeFragments(fragmentsPath(frequenciesPath), frequencies.fragments);
+
+		System.err.println("Wrote the frequencies of " + words.size() + " keywords to " + frequenciesPath + " and of "
+				+ frequencies.fragments.size() + " fragments, of " + frequencies.fragments.getTotal() + " found, to "
+				+ fragmentsPath(frequenciesPath) + "; " + frequencies.fragments.getSkipped() + " longer than "
+				+ FRAGMENT_LENGTH + " chars were not counted");
+	}
+
+	protected void writeFrequencies(String outFilePath, Map<String, Long> counts) {
+		BufferedWriter textWriter = null;
+
+		try {
+			textWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFilePath), "UTF-8"));
+
+			for (String word : SORTER.sort(new ArrayList<String>(counts.keySet()))) {
+				textWriter.write(word);
+				textWriter.write('\t');
+				textWriter.write(String.valueOf(counts.get(word)));
+				textWriter.write('\n');
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textWriter != null) {
+					textWriter.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes the most frequent fragments, each as <code>fragment&lt;TAB&gt;count&lt;TAB&gt;error</code>,
+	 * most frequent first; the true count is at most <code>count</code> and at least
+	 * <code>count - error</code>.
+	 */
+	protected void writeFragments(String outFilePath, SpaceSavingCounter fragments) {
+		BufferedWriter textWriter = null;
+
+		try {
+			textWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFilePath), "UTF-8"));
+
+			for (int slot : fragments.top(fragments.size())) {
+				textWriter.write(fragments.keyAt(slot) + "\t" + fragments.countAt(slot) + "\t" + fragments.errorAt(slot) + "\n");
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textWriter != null) {
+					textWriter.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes the most frequent n-grams of the fragments, those of one yi ge first, each as
+	 * <code>ngram&lt;TAB&gt;n&lt;TAB&gt;count&lt;TAB&gt;error</code>, most frequent first; the true
+	 * count is at most <code>count</code> and at least <code>count - error</code>.
+	 */
+	protected void writeNgrams(String outFilePath, FragmentNgrams ngrams) {
+		BufferedWriter textWriter = null;
+
+		try {
+			textWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFilePath), "UTF-8"));
+
+			for (int n = 1; n <= FragmentNgrams.MAX_N; n++) {
+				SpaceSavingCounter counter = ngrams.getCounter(n);
+
+				for (int slot : counter.top(NGRAM_TOP)) {
+					textWriter.write(counter.keyAt(slot) + "\t" + n + "\t" + counter.countAt(slot) + "\t" + counter.errorAt(slot) + "\n");
+				}
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textWriter != null) {
+					textWriter.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+
+		System.err.println("Wrote the most frequent n-grams of " + ngrams.getCounter(1).getTotal() + " fragment yi ge to " + outFilePath);
+	}
+
+	//=========== PARALLEL COUNTING
+
+	/**
+	 * Counts the syllables and words of one text; the tasks of all the volumes are run by a
+	 * work-stealing pool sharing the one dictionary. Each text is parsed with the version of the
+	 * dictionary that is current when it starts.
+	 */
+	protected static class TextCount implements Callable<TextCount> {
+
+		protected final CountWordsInDocs instance;
+
+		protected final DictionaryHandle dict;
+
+		protected final String textPath;
+
+		protected final boolean mapped;
+
+		/** the frequencies of the worker threads, null if not counting them */
+		protected final WorkerFrequencies frequencies;
+
+		protected int yiGeCount = 0;
+
+		protected int wordCount = 0;
+
+		protected long parseMs = 0;
+
+		/** the lines that were not NFC */
+		protected int normalizedCount = 0;
+
+		protected int dictVersion = 0;
+
+		public TextCount(CountWordsInDocs instance, DictionaryHandle dict, String textPath, boolean mapped, WorkerFrequencies frequencies) {
+			this.instance = instance;
+			this.dict = dict;
+			this.textPath = textPath;
+			this.mapped = mapped;
+			this.frequencies = frequencies;
+		}
+
+		@Override
+		public TextCount call() {
+			ParseContext context = new ParseContext();
+			TibetanNormalizer normalizer = new TibetanNormalizer();
+
+			DictionaryHandle.Version version = this.dict.getVersion();
+			Trie dict = version.getTrie();
+			dictVersion = version.getVersion();
+
+			long startParsing = System.currentTimeMillis();
+			WordCounter counter = frequencies != null ? new FrequencyCounter(frequencies.get()) : new WordCounter();
+
+			wordCount = mapped ? instance.countWordsMapped(textPath, dict, context, normalizer, counter) : instance.countWords(textPath, dict, context, normalizer, counter);
+			parseMs = System.currentTimeMillis() - startParsing;
+
+			yiGeCount = context.getYiGeCount();
+			normalizedCount = normalizer.getChangedCount();
+
+			return this;
+		}
+	}
+
+	protected static void usage() {
+		System.err.println("usage: CountWordsInDocs [--threads N] [--mapped] [--watch SECONDS] [--weighted] [--frequencies FILE] [--ngrams FILE] dictionary sourceDirectory");
+		System.exit(1);
+	}
+
+	/**
+	 * Takes the dictionary and the directory of volumes, each a directory of texts. The texts
+	 * are parsed in parallel on <code>--threads</code> threads, by default one per core, and the
+	 * counts are reported per volume in order. With <code>--mapped</code> the texts are
+	 * memory-mapped and decoded by a <code>MappedText</code> rather than read line by line. With
+	 * <code>--watch</code> the dictionary file is checked every so many seconds and reloaded when
+	 * it changes, the texts not yet started being parsed with the new version. With
+	 * <code>--weighted</code> each clause is segmented by the frequencies given with the
+	 * dictionary rather than longest match first. With <code>--frequencies</code> the number of
+	 * times each keyword was found is written to the file given, as a <code>word&lt;TAB&gt;count</code>
+	 * list in Tibetan order; appended to the dictionary, it gives it the frequencies for
+	 * <code>--weighted</code>. The unmatched fragments of up to <code>FRAGMENT_LENGTH</code> chars
+	 * are counted in bounded memory, <code>FRAGMENT_CAPACITY</code> of them per thread, and the most
+	 * frequent written to the same file with <code>-fragments</code> before its extension, most
+	 * frequent first, with the error of each count as for <code>--ngrams</code>. With
+	 * <code>--ngrams</code> the runs of 1 to 4 yi ge inside the fragments are counted in bounded
+	 * memory and the most frequent written to the file given, as candidates for the dictionary.
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean mapped = false;
+		int watchSeconds = 0;
+		TrieConfig trieConfig = new TrieConfig();
+		String frequenciesPath = null;
+		String ngramsPath = null;
+		int argIx = 0;
+
+		while (argIx < args.length && args[argIx].startsWith("--")) {
+			if (args[argIx].equals("--threads") && argIx + 1 < args.length) {
+				threads = Integer.parseInt(args[argIx + 1]);
+				argIx += 2;
+			} else if (args[argIx].equals("--mapped")) {
+				mapped = true;
+				argIx++;
+			} else if (args[argIx].equals("--watch") && argIx + 1 < args.length) {
+				watchSeconds = Integer.parseInt(args[argIx + 1]);
+				argIx += 2;
+			} else if (args[argIx].equals("--weighted")) {
+				trieConfig.setWeightedSegmentation(true);
+				argIx++;
+			} else if (args[argIx].equals("--frequencies") && argIx + 1 < args.length) {
+				frequenciesPath = args[argIx + 1];
+				argIx += 2;
+			} else if (args[argIx].equals("--ngrams") && argIx + 1 < args.length) {
+				ngramsPath = args[argIx + 1];
+				argIx += 2;
+			} else {
+				usage();
+			}
+		}
+
+		if (args.length - argIx != 2 || threads < 1) {
+			usage();
+		}
+
+		if (frequenciesPath != null && watchSeconds > 0) {
+			// the keyword IDs counted would be those of different versions
+			System.err.println("--frequencies cannot be used with --watch");
+			System.exit(1);
+		}
+
+		String dictFilePath = args[argIx];
+		String srcDirPath = args[argIx + 1];
+
 		CountWordsInDocs instance = new CountWordsInDocs();
+		DictionaryHandle dict = null;
+
+		try {
+			dict = new DictionaryHandle(new File(dictFilePath), trieConfig);
+		} catch (IOException ex) {
+			System.err.println("Processing dictionary " + dictFilePath + " failed");
+			ex.printStackTrace();
+			System.exit(1);
+		}
 		
-		long startDict = System.currentTimeMillis();
-		Trie dict = instance.initDict(args[0]);
-		long endDict = System.currentTimeMillis();
-		
-		System.err.println("Processed dictionary " + args[0] + " in " + (endDict - startDict) + " ms\n");
-		
-		Trie.parsing = true;
-		
-		String srcDirPath = args[1];
+		System.err.println("Processed dictionary " + dictFilePath + " in " + dict.getVersion().getBuildMillis() + " ms\n");
+
+		if (watchSeconds > 0) {
+			dict.watch(watchSeconds, TimeUnit.SECONDS);
+		}
 		
 		FilenameFilter volDirsOnly = new VolDirsOnly();
 		FilenameFilter textsOnly = new TextsOnly();
@@ -208,38 +706,93 @@ public class CountWordsInDocs {
 		File srcDir = new File(srcDirPath);
 		String[] volDirsNms = srcDir.list(volDirsOnly);
 		Arrays.sort(volDirsNms);
-		
-		int volNum = 1;
-		
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		WorkerFrequencies frequencies = null;
+
+		if (frequenciesPath != null || ngramsPath != null) {
+			frequencies = new WorkerFrequencies(frequenciesPath != null, ngramsPath != null);
+		}
+		long startAll = System.currentTimeMillis();
+
+		// submit the texts of every volume up front, so that no thread waits for a volume to finish
+		List<List<Future<TextCount>>> volumes = new ArrayList<List<Future<TextCount>>>();
+
 		for (String volDirNm : volDirsNms) {
 			File volDir = new File(srcDirPath, volDirNm);
 			String[] textsNms = volDir.list(textsOnly);
 			
 			String volDirPath = volDir.getAbsolutePath();
-			
+
+			List<Future<TextCount>> texts = new ArrayList<Future<TextCount>>();
+
+			for (String textNm : textsNms) {
+				texts.add(pool.submit(new TextCount(instance, dict, volDirPath + "/" + textNm, mapped, frequencies)));
+			}
+
+			volumes.add(texts);
+		}
+		
+		int volNum = 1;
+		long totalYiGe = 0;
+		long totalWords = 0;
+		
+		for (List<Future<TextCount>> texts : volumes) {
+			int yiGeCount = 0;
 			int wordCount = 0;
-			dict.resetYiGeCount();
+			long parseMs = 0;
+			int normalizedCount = 0;
+			int dictVersion = 0;
+
+			int failedCount = 0;
+
+			// every text is waited for, so that none is still counting when the frequencies are merged
+			for (Future<TextCount> text : texts) {
+				try {
+					TextCount count = text.get();
+
+					yiGeCount += count.yiGeCount;
+					wordCount += count.wordCount;
+					parseMs += count.parseMs;
+					normalizedCount += count.normalizedCount;
+					dictVersion = Math.max(dictVersion, count.dictVersion);
+				} catch (Exception ex) {
+					System.err.println("Processing a text of volume: " + volNum + " failed");
+					ex.printStackTrace();
+					failedCount++;
+				}
+			}
 
-			try {
-				long startParsing = System.currentTimeMillis();
+			long elapsed = System.currentTimeMillis() - startAll;
 
-				for (String textNm : textsNms) {
-					String textPath = volDirPath + "/" + textNm;
+			String version = watchSeconds > 0 ? ", dictionary version " + dictVersion : "";
+			String failed = failedCount > 0 ? ", " + failedCount + " texts failed" : "";
 
-					List<Token> parsed = (List<Token>) instance.parse(textPath, dict);
+			System.err.println("Volume: " + volNum + " has " + yiGeCount + " syllables and " + wordCount + " words, " + normalizedCount + " lines normalized" + version + failed + ". Parsed in " + parseMs + " ms, done at " + elapsed + " ms");
 
-					wordCount += parsed.size();
-				}
+			totalYiGe += yiGeCount;
+			totalWords += wordCount;
 
-				long endParsing = System.currentTimeMillis();
+			volNum++;
+		}
 
-				System.err.println("Volume: " + volNum + " has " + dict.getYiGeCount() + " syllables and " + wordCount + " words. Parsed in " + (endParsing - startParsing) + " ms");
-			} catch (Exception ex) {
-				System.err.println("Processing volume: " + volNum + "failed");
-				ex.printStackTrace();
+		pool.shutdown();
+		dict.close();
+
+		long endAll = System.currentTimeMillis();
+
+		System.err.println("\n" + volumes.size() + " volumes with " + totalYiGe + " syllables and " + totalWords + " words parsed on " + threads + " threads in " + (endAll - startAll) + " ms");
+
+		if (frequencies != null) {
+			Frequencies merged = frequencies.merge();
+
+			if (frequenciesPath != null) {
+				instance.writeFrequencies(frequenciesPath, merged, dict.get());
 			}
 
-			volNum++;
+			if (ngramsPath != null) {
+				instance.writeNgrams(ngramsPath, merged.ngrams);
+			}
 		}
 	}
 
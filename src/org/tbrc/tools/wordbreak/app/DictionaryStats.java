@@ -0,0 +1,125 @@
+package org.tbrc.tools.wordbreak.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Dawg;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.NodeStats;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+
+/**
+ * Reports for each dictionary the states of its <code>State</code> graph by node layout and
+ * fan-out, the size of its minimized <code>Dawg</code>, and the heap retained by the trie as a
+ * <code>State</code> graph, a <code>DoubleArrayTrie</code>, a <code>DfaTrie</code> and a
+ * <code>Dawg</code>.
+ * <p>
+ * The retained heap is measured as the growth of the used heap after a full collection, so it
+ * includes the keywords and the syllable table; run with a heap large enough for one trie at a
+ * time.
+ * <p>
+ * Takes the dictionaries as parameters, e.g., <code>resources/*.txt</code> minus the texts.
+ */
+public class DictionaryStats {
+
+	protected static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	protected static Trie load(String dictFilePath, boolean compile, boolean fullDfa, boolean minimized) throws IOException {
+		TrieBuilder dict = new TrieBuilder();
+
+		if (fullDfa) {
+			dict.fullDfa();
+		}
+
+		if (minimized) {
+			dict.minimized();
+		}
+
+		BufferedReader dictReader = new BufferedReader(new InputStreamReader(new FileInputStream(dictFilePath), "UTF-8"));
+		try {
+			String entryStr = null;
+			while ((entryStr = dictReader.readLine()) != null) {
+				dict.addKeyword(entryStr);
+			}
+		} finally {
+			dictReader.close();
+		}
+
+		return compile ? dict.build() : dict.buildStateGraph();
+	}
+
+	/**
+	 * @return the heap retained by the trie, in KB
+	 */
+	protected static long retained(String dictFilePath, boolean compile, boolean fullDfa, boolean minimized) throws IOException {
+		long before = usedHeap();
+		Trie dict = load(dictFilePath, compile, fullDfa, minimized);
+		long after = usedHeap();
+
+		// keep the trie reachable until it has been measured
+		if (dict.getKeywordCount() < 0) {
+			System.err.println(dict);
+		}
+
+		return (after - before) / 1024;
+	}
+
+	protected static void report(String dictFilePath) throws IOException {
+		Trie dict = load(dictFilePath, false, false, false);
+		NodeStats stats = new NodeStats(dict);
+
+		System.err.println(new File(dictFilePath).getName() + ": " + dict.getKeywordCount() + " keywords, "
+				+ dict.getSyllableTable().size() + " syllables");
+		System.err.println("    " + stats.getStateCount() + " states: " + stats.getLeafCount() + " leaves, "
+				+ stats.getArrayCount() + " sorted arrays, " + stats.getHashCount() + " hashed; "
+				+ stats.getTransitionCount() + " transitions, fan-out up to " + stats.getMaxFanOut() + ", depth up to " + stats.getMaxDepth());
+
+		StringBuilder fanOuts = new StringBuilder("    fan-out");
+
+		for (int fanOut = 0; fanOut <= NodeStats.MAX_FAN_OUT + 1; fanOut++) {
+			String label = fanOut > NodeStats.MAX_FAN_OUT ? "more" : String.valueOf(fanOut);
+
+			fanOuts.append(' ').append(label).append(": ").append(stats.getFanOutCount(fanOut));
+		}
+
+		System.err.println(fanOuts);
+
+		Dawg dawg = load(dictFilePath, true, false, true).getDawg();
+
+		System.err.println("    minimized: " + dawg.getStateCount() + " states, " + dawg.getTransitionCount() + " transitions, "
+				+ (dawg.getSizeInBytes() / 1024) + " KB of arrays");
+
+		dict = null;
+		dawg = null;
+
+		System.err.println("    retained: State graph " + retained(dictFilePath, false, false, false) + " KB, DoubleArrayTrie "
+				+ retained(dictFilePath, true, false, false) + " KB, DfaTrie " + retained(dictFilePath, true, true, false) + " KB, Dawg "
+				+ retained(dictFilePath, true, false, true) + " KB\n");
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: DictionaryStats dictionary...");
+			System.exit(1);
+		}
+
+		for (String dictFilePath : args) {
+			report(dictFilePath);
+		}
+	}
+
+}
@@ -4,7 +4,6 @@ import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -12,6 +11,7 @@ import java.util.Set;
 
 import org.tbrc.tools.wordbreak.utils.SortTibetanUnicodeStrings;
 import org.tbrc.tools.wordbreak.utils.Converter;
+import org.tbrc.tools.wordbreak.utils.TibetanNormalizer;
 
 
 public class HeadwordsMerge {
@@ -20,6 +20,8 @@ public class HeadwordsMerge {
 
 	protected static SortTibetanUnicodeStrings SORTER = new SortTibetanUnicodeStrings();
 
+	protected static TibetanNormalizer NORMALIZER = new TibetanNormalizer();
+
 	protected static boolean isTibLetter(int c) {
 		return ('\u0F40' <= c && c <= '\u0F83') || ('\u0F90' <= c && c <= '\u0FBC') || (c == '\u0F00');
 	}
@@ -58,7 +60,7 @@ public class HeadwordsMerge {
 			String headword = headwordsReader.readLine();
 
 			while (headword != null) {
-				headword = Normalizer.normalize(headword, Normalizer.Form.NFC);
+				headword = NORMALIZER.normalize(headword);
 				headword = trim(headword);
 				headwords.add(headword);
 				headword = headwordsReader.readLine();
@@ -89,7 +91,7 @@ public class HeadwordsMerge {
 
 			while (headword != null) {
 				String tmp = converter.toUnicode(headword);
-				tmp = Normalizer.normalize(tmp, Normalizer.Form.NFC);
+				tmp = NORMALIZER.normalize(tmp);
 				tmp = trim(tmp);
 				headwords.add(tmp);
 				headword = headwordsReader.readLine();
@@ -169,6 +171,8 @@ public class HeadwordsMerge {
 			List<String> sortedHeadwords = sort(headwords);
 			
 			writeHeadwords(outPath, sortedHeadwords);
+
+			System.err.println(NORMALIZER.getChangedCount() + " of " + NORMALIZER.getLineCount() + " headwords normalized");
 			
 		} else {
 			System.err.println("Too few arguments");
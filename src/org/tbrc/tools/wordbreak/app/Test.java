@@ -8,19 +8,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.text.Normalizer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import org.tbrc.tools.wordbreak.ahocorasick.trie.DictionaryImage;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.ParseContext;
 import org.tbrc.tools.wordbreak.ahocorasick.trie.Token;
 import org.tbrc.tools.wordbreak.ahocorasick.trie.Trie;
+import org.tbrc.tools.wordbreak.ahocorasick.trie.TrieBuilder;
+import org.tbrc.tools.wordbreak.utils.ClauseReader;
+import org.tbrc.tools.wordbreak.utils.TibetanNormalizer;
 import static java.lang.Math.min;
 
 public class Test {
-	
-	protected static String clausePuct = "[\u0F0D-\u0F14]";
+
+	/** normalizes the lines of the texts and counts those that were not NFC */
+	protected TibetanNormalizer normalizer = new TibetanNormalizer();
 
 	protected boolean isTibLetterOrDigit(int c) {
 		return ('\u0F40' <= c && c <= '\u0F83') || ('\u0F90' <= c && c <= '\u0FBC') || ('\u0F20' <= c && c <= '\u0F33') || (c == '\u0F00');
@@ -36,6 +40,12 @@ public class Test {
 
 		try {
 			File dictFile = new File(dictFilePath);
+
+			// a dictionary compiled by CompileDict is mapped rather than built
+			if (DictionaryImage.isImage(dictFile)) {
+				return DictionaryImage.load(dictFile);
+			}
+
 			FileInputStream dictStream = new FileInputStream(dictFile);
 			InputStreamReader dictStreamReader = new InputStreamReader(dictStream, "UTF-8");
 			
@@ -59,7 +69,7 @@ public class Test {
 	}
 
 	protected Trie initDict(BufferedReader dictReader) {
-		Trie dict = new Trie();
+		TrieBuilder dict = new TrieBuilder();
 
 		String entryStr = null;
 		try {
@@ -71,33 +81,24 @@ public class Test {
 			ex.printStackTrace();
 		}
 
-		return dict;
+		return dict.build();
 	}
 	
+	protected ClauseReader openClauses(String textFilePath) throws IOException {
+		return new ClauseReader(new FileInputStream(textFilePath).getChannel(), normalizer);
+	}
+
 	protected List<String> getClauses(String textFilePath) {
-		BufferedReader textReader = null;
+		ClauseReader textReader = null;
 		List<String> clauses = new ArrayList<String>();
 
 		try {
-			File textFile = new File(textFilePath);
-			FileInputStream textStream = new FileInputStream(textFile);
-			InputStreamReader textStreamReader = new InputStreamReader(textStream, "UTF-8");
-			
-			textReader = new BufferedReader(textStreamReader);
+			textReader = openClauses(textFilePath);
 			
-			StringBuilder sb = new StringBuilder();
-			String line = null;
-			while ( (line = textReader.readLine()) != null ) {
-				line = Normalizer.normalize(line, Normalizer.Form.NFC);
-				sb.append(line);
+			String clause = null;
+			while ( (clause = textReader.nextClause()) != null ) {
+				clauses.add(clause);
 			}
-			
-			String content = sb.toString();
-			
-			String[] pieces = content.split(clausePuct);
-
-			clauses = Arrays.asList(pieces);
-			
 		} catch (IOException ex) {
 			ex.printStackTrace();
 		} finally {
@@ -114,14 +115,34 @@ public class Test {
 	}
 	
 	protected Collection<Token> parse(String textFilePath, Trie dict) {
-		
-		List<String> clauses = getClauses(textFilePath);
+		return parse(textFilePath, dict, new ParseContext());
+	}
 
+	/**
+	 * Tokenizes the text clause by clause as it is read.
+	 */
+	protected Collection<Token> parse(String textFilePath, Trie dict, ParseContext context) {
+		ClauseReader textReader = null;
 		Collection<Token> tokens = new ArrayList<Token>();
-		
-		for (String clause : clauses) {
-			Collection<Token> clauseTokens = dict.tokenize(clause);
-			tokens.addAll(clauseTokens);
+
+		try {
+			textReader = openClauses(textFilePath);
+			
+			String clause = null;
+			while ( (clause = textReader.nextClause()) != null ) {
+				Collection<Token> clauseTokens = dict.tokenize(clause, context);
+				tokens.addAll(clauseTokens);
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			try {
+				if (textReader != null) {
+					textReader.close();
+				}
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
 		}
 		
 		return tokens;
@@ -165,15 +186,16 @@ public class Test {
 		Trie dict = instance.initDict(args[0]);
 		long endDict = System.currentTimeMillis();
 		
-		Trie.parsing = true;
+		ParseContext context = new ParseContext();
 		
 		long startParsing = System.currentTimeMillis();		
-		List<Token> parsed = (List<Token>) instance.parse(args[1], dict);
+		List<Token> parsed = (List<Token>) instance.parse(args[1], dict, context);
 		long endParsing = System.currentTimeMillis();		
 		
 		instance.writeTokens(args[2], parsed);
 		
-		System.err.println(parsed.size() + "   " + Trie.parsing);
+		System.err.println(parsed.size() + " tokens, " + context.getYiGeCount() + " syllables");
+		System.err.println(instance.normalizer.getChangedCount() + " of " + instance.normalizer.getLineCount() + " lines normalized");
 		for (int i = 0; i < min(parsed.size(), 50); i++) {
 			Token token = parsed.get(i);
 			System.err.println(token.getClass().getSimpleName() + ": " + token.getFragment());
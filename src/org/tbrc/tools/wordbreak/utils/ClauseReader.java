@@ -0,0 +1,287 @@
+package org.tbrc.tools.wordbreak.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the clauses of a Tibetan text one at a time, so that a volume of any size can be
+ * tokenized as it is read.
+ * <p>
+ * The text is read in a window of <code>WINDOW_SIZE</code> characters and split at every shad and
+ * other clause punctuation, U+0F0D through U+0F14; the lines are joined without a separator. Each
+ * line is NFC normalized by a <code>TibetanNormalizer</code>, which counts the lines that were not
+ * NFC, one part at a time, as NFC does not reorder or compose across clause punctuation. Empty
+ * clauses, as between the two shad of a nyis shad, are skipped.
+ * <p>
+ * So that a text with no punctuation cannot fill the memory, a clause is cut when it reaches the
+ * maximum length, after its last tsheg or space if it has one, and the rest goes on into the next
+ * clause. The length is that of the text as read; normalizing may lengthen a clause a little.
+ *
+ * @author Chris
+ */
+public class ClauseReader implements Closeable {
+
+	static final int WINDOW_SIZE = 8192;
+
+	public static final int MAX_CLAUSE_LENGTH = 1 << 16;
+
+	private final Reader reader;
+
+	private final TibetanNormalizer normalizer;
+
+	private final int maxClauseLength;
+
+	private final char[] window = new char[WINDOW_SIZE];
+
+	private int pos = 0;
+
+	private int limit = 0;
+
+	private boolean eof = false;
+
+	/** the clause read so far; its characters from partStart on are not normalized yet */
+	private final StringBuilder clause = new StringBuilder();
+
+	/** the start in the clause of the part of the current line */
+	private int partStart = 0;
+
+	/** the combining class of the last character of the part, NfcQuickCheck.MAYBE once it may need normalizing */
+	private int lastCcc = 0;
+
+	/** whether characters of the current line were read, so that a last line without a line break is counted */
+	private boolean lineOpen = false;
+
+	/** whether normalization changed a part of the current line */
+	private boolean lineChanged = false;
+
+	/** after a '\r', so that a '\n' right after it does not end another line */
+	private boolean carriageReturn = false;
+
+	public ClauseReader(Reader reader, TibetanNormalizer normalizer, int maxClauseLength) {
+		if (maxClauseLength < 1) {
+			throw new IllegalArgumentException("the maximum clause length must be at least 1");
+		}
+
+		this.reader = reader;
+		this.normalizer = normalizer;
+		this.maxClauseLength = maxClauseLength;
+	}
+
+	public ClauseReader(Reader reader, TibetanNormalizer normalizer) {
+		this(reader, normalizer, MAX_CLAUSE_LENGTH);
+	}
+
+	public ClauseReader(Reader reader) {
+		this(reader, new TibetanNormalizer());
+	}
+
+	/**
+	 * @param channel UTF-8 encoded text; malformed input is read as U+FFFD, as by an
+	 * <code>InputStreamReader</code>
+	 */
+	public ClauseReader(ReadableByteChannel channel, TibetanNormalizer normalizer) {
+		this(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), -1), normalizer);
+	}
+
+	public ClauseReader(ReadableByteChannel channel) {
+		this(channel, new TibetanNormalizer());
+	}
+
+	/**
+	 * @return the normalizer of the lines, with the counts of the lines read so far
+	 */
+	public TibetanNormalizer getNormalizer() {
+		return normalizer;
+	}
+
+	public static boolean isClausePunct(char c) {
+		return '\u0F0D' <= c && c <= '\u0F14';
+	}
+
+	/**
+	 * @return the next non-empty clause, or null at the end of the text
+	 */
+	public String nextClause() throws IOException {
+		while (true) {
+			// normalizing a part may have lengthened the clause past the maximum
+			if (clause.length() >= maxClauseLength) {
+				return take(cut());
+			}
+
+			if (pos == limit) {
+				if (eof || ! fill()) {
+					endPart();
+
+					if (lineOpen) {
+						normalizer.countLine(lineChanged);
+						lineOpen = false;
+					}
+
+					return clause.length() > 0 ? take(clause.length()) : null;
+				}
+			}
+
+			// the characters up to the next line break or punctuation, or up to the maximum length
+			int start = pos;
+			int end = Math.min(limit, pos + maxClauseLength - clause.length());
+
+			while (pos < end) {
+				char c = window[pos];
+
+				if (c == '\n' || c == '\r' || isClausePunct(c)) {
+					break;
+				}
+
+				if (lastCcc != NfcQuickCheck.MAYBE) {
+					lastCcc = NfcQuickCheck.check(lastCcc, c);
+				}
+
+				pos++;
+			}
+
+			if (pos > start) {
+				clause.append(window, start, pos - start);
+				lineOpen = true;
+				carriageReturn = false;
+			}
+
+			if (pos == end) {
+				continue;
+			}
+
+			char c = window[pos++];
+
+			if (c == '\n' || c == '\r') {
+				boolean crlf = c == '\n' && carriageReturn;
+
+				carriageReturn = c == '\r';
+
+				if (! crlf) {
+					endPart();
+					normalizer.countLine(lineChanged);
+					lineOpen = false;
+					lineChanged = false;
+				}
+
+				continue;
+			}
+
+			// clause punctuation, which is skipped
+			carriageReturn = false;
+			lineOpen = true;
+			endPart();
+
+			if (clause.length() > 0) {
+				return take(clause.length());
+			}
+		}
+	}
+
+	/**
+	 * @return false at the end of the text
+	 */
+	private boolean fill() throws IOException {
+		int count = reader.read(window, 0, window.length);
+
+		if (count < 0) {
+			eof = true;
+			return false;
+		}
+
+		pos = 0;
+		limit = count;
+		return true;
+	}
+
+	/**
+	 * Normalizes the part of the current line read since the last line break or punctuation.
+	 */
+	private void endPart() {
+		if (lastCcc == NfcQuickCheck.MAYBE) {
+			String part = clause.substring(partStart);
+			String normalized = normalizer.normalizePart(part);
+
+			if (normalized != part) {
+				clause.setLength(partStart);
+				clause.append(normalized);
+				lineChanged = true;
+			}
+		}
+
+		partStart = clause.length();
+		lastCcc = 0;
+	}
+
+	/**
+	 * Finds where to cut a clause that has reached the maximum length: after its last tsheg or
+	 * space, or else before the last character that is not a combining mark or a low surrogate.
+	 * The characters before the cut are normalized.
+	 *
+	 * @return the length of the clause to return
+	 */
+	private int cut() {
+		int cut = clause.length();
+
+		while (cut > 0 && ! isBreak(clause.charAt(cut - 1))) {
+			cut--;
+		}
+
+		if (cut == 0) {
+			cut = clause.length() - 1;
+
+			while (cut > 0 && (NfcQuickCheck.combiningClass(clause.charAt(cut)) != 0 || Character.isLowSurrogate(clause.charAt(cut)))) {
+				cut--;
+			}
+
+			if (cut == 0) {
+				cut = clause.length();
+			}
+		}
+
+		if (cut > partStart) {
+			// normalize the characters before the cut as a part, then check the rest again
+			String rest = clause.substring(cut);
+
+			clause.setLength(cut);
+			endPart();
+			cut = clause.length();
+
+			for (int i = 0; i < rest.length() && lastCcc != NfcQuickCheck.MAYBE; i++) {
+				lastCcc = NfcQuickCheck.check(lastCcc, rest.charAt(i));
+			}
+
+			clause.append(rest);
+		}
+
+		return cut;
+	}
+
+	private static boolean isBreak(char c) {
+		return c == '\u0F0B' || c == '\u0F0C' || c == ' ' || c == '\t';
+	}
+
+	/**
+	 * @return the first <code>length</code> characters of the clause, which are removed from it
+	 */
+	private String take(int length) {
+		String next = clause.substring(0, length);
+
+		clause.delete(0, length);
+		partStart -= length;
+
+		return next;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
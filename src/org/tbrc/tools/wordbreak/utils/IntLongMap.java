@@ -0,0 +1,135 @@
+package org.tbrc.tools.wordbreak.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative <code>int</code> keys, such as keyword IDs, to <code>long</code> counts,
+ * in two arrays with open addressing and linear probing: nothing is boxed and nothing is
+ * allocated per entry. The table doubles when it is half full.
+ * <p>
+ * The slots are visited with <code>capacity()</code>, <code>keyAt</code> and <code>valueAt</code>,
+ * skipping those whose key is <code>EMPTY</code>.
+ *
+ * @author Chris
+ */
+public class IntLongMap {
+
+	public static final int EMPTY = -1;
+
+	private int[] keys;
+
+	private long[] values;
+
+	private int size = 0;
+
+	public IntLongMap() {
+		this(1024);
+	}
+
+	/**
+	 * @param capacity the number of slots, rounded up to a power of 2
+	 */
+	public IntLongMap(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+		keys = new int[slots];
+		values = new long[slots];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Adds <code>delta</code> to the count of <code>key</code>, which is 0 if it was not in the map.
+	 */
+	public void add(int key, long delta) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				values[slot] += delta;
+				return;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = delta;
+
+		if (++size > keys.length >> 1) {
+			rehash(2 * keys.length);
+		}
+	}
+
+	/**
+	 * @return the count of <code>key</code>, 0 if it is not in the map
+	 */
+	public long get(int key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Adds the counts of <code>other</code> to those of this map.
+	 */
+	public void addAll(IntLongMap other) {
+		for (int slot = 0; slot < other.keys.length; slot++) {
+			if (other.keys[slot] != EMPTY) {
+				add(other.keys[slot], other.values[slot]);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * @return the key in the slot, <code>EMPTY</code> if none
+	 */
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public long valueAt(int slot) {
+		return values[slot];
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] != EMPTY) {
+				add(oldKeys[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	/** spreads keys that are dense, as IDs are, over the table */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+
+		return h ^ (h >>> 16);
+	}
+
+}
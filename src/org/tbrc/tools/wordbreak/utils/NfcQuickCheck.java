@@ -0,0 +1,103 @@
+package org.tbrc.tools.wordbreak.utils;
+
+/**
+ * The NFC quick check of Unicode for the characters that occur in Tibetan texts, so that text
+ * that is already normalized can be recognized without calling <code>Normalizer</code>.
+ * <p>
+ * Below U+0300 every character is a starter that NFC leaves alone. In the Tibetan block, U+0F00
+ * through U+0FFF, no character composes with the one before it, so the text is normalized unless
+ * it has one of the characters that NFC decomposes, such as U+0F43 or U+0F73, or two combining
+ * marks out of canonical order. Any other character is taken to need normalizing.
+ *
+ * @author Chris
+ */
+public class NfcQuickCheck {
+
+	/** a canonical combining class that means the character is not known to be normalized */
+	public static final int MAYBE = -1;
+
+	/** the canonical combining classes of the Tibetan block, MAYBE for the characters NFC decomposes */
+	private static final int[] TIBETAN_CCC = new int[0x100];
+
+	static {
+		int[] decomposed = { 0x43, 0x4D, 0x52, 0x57, 0x5C, 0x69, 0x73, 0x75, 0x76, 0x78, 0x81, 0x93, 0x9D, 0xA2, 0xA7, 0xAC, 0xB9 };
+
+		for (int c : decomposed) {
+			TIBETAN_CCC[c] = MAYBE;
+		}
+
+		TIBETAN_CCC[0x18] = 220;
+		TIBETAN_CCC[0x19] = 220;
+		TIBETAN_CCC[0x35] = 220;
+		TIBETAN_CCC[0x37] = 220;
+		TIBETAN_CCC[0x39] = 216;
+		TIBETAN_CCC[0x71] = 129;
+		TIBETAN_CCC[0x72] = 130;
+		TIBETAN_CCC[0x74] = 132;
+		TIBETAN_CCC[0x7A] = 130;
+		TIBETAN_CCC[0x7B] = 130;
+		TIBETAN_CCC[0x7C] = 130;
+		TIBETAN_CCC[0x7D] = 130;
+		TIBETAN_CCC[0x80] = 130;
+		TIBETAN_CCC[0x82] = 230;
+		TIBETAN_CCC[0x83] = 230;
+		TIBETAN_CCC[0x84] = 9;
+		TIBETAN_CCC[0x86] = 230;
+		TIBETAN_CCC[0x87] = 230;
+		TIBETAN_CCC[0xC6] = 220;
+	}
+
+	/**
+	 * @return the canonical combining class of <code>c</code>, or <code>MAYBE</code> if NFC may
+	 * change it
+	 */
+	public static int combiningClass(char c) {
+		if (c < '\u0300') {
+			return 0;
+		}
+
+		if ((c >>> 8) == 0x0F) {
+			return TIBETAN_CCC[c & 0xFF];
+		}
+
+		return MAYBE;
+	}
+
+	/**
+	 * Checks <code>c</code> following a character of combining class <code>lastCcc</code>.
+	 *
+	 * @return the combining class of <code>c</code>, or <code>MAYBE</code> if the text is not known
+	 * to be normalized
+	 */
+	public static int check(int lastCcc, char c) {
+		int ccc = combiningClass(c);
+
+		if (ccc > 0 && lastCcc > ccc) {
+			return MAYBE;
+		}
+
+		return ccc;
+	}
+
+	/**
+	 * @return true if <code>text[start, end)</code> is certainly NFC, false if it may not be
+	 */
+	public static boolean isNormalized(CharSequence text, int start, int end) {
+		int lastCcc = 0;
+
+		for (int i = start; i < end; i++) {
+			lastCcc = check(lastCcc, text.charAt(i));
+
+			if (lastCcc == MAYBE) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public static boolean isNormalized(CharSequence text) {
+		return isNormalized(text, 0, text.length());
+	}
+
+}
@@ -0,0 +1,406 @@
+package org.tbrc.tools.wordbreak.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Finds the most frequent pieces of text of a stream in bounded memory, with the Space-Saving
+ * algorithm of Metwally, Agrawal and El Abbadi: at most <code>capacity</code> keys are counted,
+ * and a key that is not among them replaces the one with the least count, taking over that count
+ * as its error. The count of a key is never less than its true count, nor more than it by more
+ * than its error, and any key whose true count is more than <code>getTotal() / capacity</code>
+ * is among those counted.
+ * <p>
+ * Everything is in arrays allocated up front: the characters of the keys, at most
+ * <code>maxKeyLength</code> each, a min-heap of the slots by count and an open-addressing index
+ * of the keys, so counting allocates nothing. Longer keys are skipped.
+ *
+ * @author Chris
+ */
+public class SpaceSavingCounter {
+
+	private static final int EMPTY = -1;
+
+	private final int capacity;
+
+	private final int maxKeyLength;
+
+	/** the characters of the key of slot s, keyChars[s * maxKeyLength ...] */
+	private final char[] keyChars;
+
+	private final int[] keyLengths;
+
+	private final int[] keyHashes;
+
+	private final long[] counts;
+
+	private final long[] errors;
+
+	/** the slots as a min-heap by count, and the position of each slot in it */
+	private final int[] heap;
+
+	private final int[] heapPos;
+
+	/** the slot of each key by hash, EMPTY if none */
+	private final int[] index;
+
+	private int size = 0;
+
+	private long total = 0;
+
+	private long skipped = 0;
+
+	public SpaceSavingCounter(int capacity, int maxKeyLength) {
+		this.capacity = capacity;
+		this.maxKeyLength = maxKeyLength;
+		this.keyChars = new char[capacity * maxKeyLength];
+		this.keyLengths = new int[capacity];
+		this.keyHashes = new int[capacity];
+		this.counts = new long[capacity];
+		this.errors = new long[capacity];
+		this.heap = new int[capacity];
+		this.heapPos = new int[capacity];
+		this.index = new int[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2];
+		Arrays.fill(this.index, EMPTY);
+	}
+
+	/**
+	 * Counts one occurrence of <code>text[start, end)</code>.
+	 */
+	public void add(CharSequence text, int start, int end) {
+		if (end - start > maxKeyLength) {
+			skipped++;
+			return;
+		}
+
+		total++;
+		add(text, start, end, hash(text, start, end), 1, 0);
+	}
+
+	/**
+	 * Adds <code>count</code> to the key, or if it is not counted makes it replace the key of least
+	 * count, with that count added to its own and to its error.
+	 */
+	private void add(CharSequence text, int start, int end, int hash, long count, long error) {
+		int slot = find(text, start, end, hash);
+
+		if (slot != EMPTY) {
+			counts[slot] += count;
+			errors[slot] += error;
+			siftDown(heapPos[slot]);
+			return;
+		}
+
+		if (size < capacity) {
+			slot = size++;
+			heap[slot] = slot;
+			heapPos[slot] = slot;
+			counts[slot] = count;
+			errors[slot] = error;
+			setKey(slot, text, start, end, hash);
+			siftUp(slot);
+			return;
+		}
+
+		slot = heap[0];
+		long min = counts[slot];
+
+		unindex(slot);
+		counts[slot] = min + count;
+		errors[slot] = min + error;
+		setKey(slot, text, start, end, hash);
+		siftDown(0);
+	}
+
+	/**
+	 * Adds the counts of <code>other</code>, as if this counter had seen its stream as well: a key
+	 * counted by one of them only is taken to have had the least count of the other, if it is full.
+	 */
+	public void addAll(SpaceSavingCounter other) {
+		long thisMin = size == capacity ? counts[heap[0]] : 0;
+		long otherMin = other.size == other.capacity ? other.counts[other.heap[0]] : 0;
+
+		// the keys of both and their merged counts, then the largest kept
+		int count = 0;
+		String[] keys = new String[size + other.size];
+		long[] mergedCounts = new long[keys.length];
+		long[] mergedErrors = new long[keys.length];
+
+		for (int slot = 0; slot < size; slot++) {
+			String key = keyAt(slot);
+			int otherSlot = other.find(key, 0, key.length(), keyHashes[slot]);
+
+			keys[count] = key;
+			mergedCounts[count] = counts[slot] + (otherSlot != EMPTY ? other.counts[otherSlot] : otherMin);
+			mergedErrors[count] = errors[slot] + (otherSlot != EMPTY ? other.errors[otherSlot] : otherMin);
+			count++;
+		}
+
+		for (int slot = 0; slot < other.size; slot++) {
+			String key = other.keyAt(slot);
+
+			if (find(key, 0, key.length(), other.keyHashes[slot]) == EMPTY) {
+				keys[count] = key;
+				mergedCounts[count] = other.counts[slot] + thisMin;
+				mergedErrors[count] = other.errors[slot] + thisMin;
+				count++;
+			}
+		}
+
+		Integer[] order = byCount(mergedCounts, count);
+
+		Arrays.fill(index, EMPTY);
+		size = 0;
+
+		for (int i = 0; i < Math.min(count, capacity); i++) {
+			String key = keys[order[i]];
+
+			add(key, 0, key.length(), hash(key, 0, key.length()), mergedCounts[order[i]], mergedErrors[order[i]]);
+		}
+
+		total += other.total;
+		skipped += other.skipped;
+	}
+
+	/**
+	 * @return the slots of the <code>k</code> keys of greatest count, or of all of them if fewer,
+	 * greatest first
+	 */
+	public int[] top(int k) {
+		Integer[] order = new Integer[size];
+
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+
+		// of equal counts the lesser key first, whatever the slots
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return counts[a] != counts[b] ? (counts[a] > counts[b] ? -1 : 1) : compareKeys(a, b);
+			}
+		});
+
+		int[] top = new int[Math.min(k, size)];
+
+		for (int i = 0; i < top.length; i++) {
+			top[i] = order[i];
+		}
+
+		return top;
+	}
+
+	/**
+	 * @return the number of keys counted
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of occurrences counted, including those of keys that were replaced
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the number of occurrences not counted as they were longer than <code>maxKeyLength</code>
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public String keyAt(int slot) {
+		return new String(keyChars, slot * maxKeyLength, keyLengths[slot]);
+	}
+
+	/**
+	 * @return the count of the key, at least its true count
+	 */
+	public long countAt(int slot) {
+		return counts[slot];
+	}
+
+	/**
+	 * @return how much the count of the key may exceed its true count
+	 */
+	public long errorAt(int slot) {
+		return errors[slot];
+	}
+
+	//=========== UTILITIES
+
+	private static Integer[] byCount(final long[] counts, int count) {
+		Integer[] order = new Integer[count];
+
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return counts[a] != counts[b] ? (counts[a] > counts[b] ? -1 : 1) : a - b;
+			}
+		});
+
+		return order;
+	}
+
+	private int compareKeys(int a, int b) {
+		int offsetA = a * maxKeyLength;
+		int offsetB = b * maxKeyLength;
+		int length = Math.min(keyLengths[a], keyLengths[b]);
+
+		for (int i = 0; i < length; i++) {
+			if (keyChars[offsetA + i] != keyChars[offsetB + i]) {
+				return keyChars[offsetA + i] - keyChars[offsetB + i];
+			}
+		}
+
+		return keyLengths[a] - keyLengths[b];
+	}
+
+	private static int hash(CharSequence text, int start, int end) {
+		int hash = 0;
+
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+
+		return hash;
+	}
+
+	private int home(int hash) {
+		int h = hash * 0x9E3779B9;
+
+		return (h ^ (h >>> 16)) & (index.length - 1);
+	}
+
+	private int find(CharSequence text, int start, int end, int hash) {
+		int mask = index.length - 1;
+
+		for (int i = home(hash); index[i] != EMPTY; i = (i + 1) & mask) {
+			int slot = index[i];
+
+			if (keyHashes[slot] == hash && matches(slot, text, start, end)) {
+				return slot;
+			}
+		}
+
+		return EMPTY;
+	}
+
+	private boolean matches(int slot, CharSequence text, int start, int end) {
+		if (keyLengths[slot] != end - start) {
+			return false;
+		}
+
+		int offset = slot * maxKeyLength;
+
+		for (int i = start; i < end; i++) {
+			if (keyChars[offset++] != text.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void setKey(int slot, CharSequence text, int start, int end, int hash) {
+		int offset = slot * maxKeyLength;
+
+		for (int i = start; i < end; i++) {
+			keyChars[offset++] = text.charAt(i);
+		}
+
+		keyLengths[slot] = end - start;
+		keyHashes[slot] = hash;
+
+		int mask = index.length - 1;
+		int i = home(hash);
+
+		while (index[i] != EMPTY) {
+			i = (i + 1) & mask;
+		}
+
+		index[i] = slot;
+	}
+
+	/**
+	 * Removes the slot from the index, moving back the entries after it that would no longer be
+	 * found, as linear probing requires.
+	 */
+	private void unindex(int slot) {
+		int mask = index.length - 1;
+		int i = home(keyHashes[slot]);
+
+		while (index[i] != slot) {
+			i = (i + 1) & mask;
+		}
+
+		index[i] = EMPTY;
+
+		for (int j = (i + 1) & mask; index[j] != EMPTY; j = (j + 1) & mask) {
+			int k = home(keyHashes[index[j]]);
+
+			// the entry stays if its home is cyclically in (i, j]
+			if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+				continue;
+			}
+
+			index[i] = index[j];
+			index[j] = EMPTY;
+			i = j;
+		}
+	}
+
+	private void siftUp(int pos) {
+		int slot = heap[pos];
+
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+
+			if (counts[heap[parent]] <= counts[slot]) {
+				break;
+			}
+
+			place(heap[parent], pos);
+			pos = parent;
+		}
+
+		place(slot, pos);
+	}
+
+	private void siftDown(int pos) {
+		int slot = heap[pos];
+
+		while (true) {
+			int child = 2 * pos + 1;
+
+			if (child >= size) {
+				break;
+			}
+
+			if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+				child++;
+			}
+
+			if (counts[slot] <= counts[heap[child]]) {
+				break;
+			}
+
+			place(heap[child], pos);
+			pos = child;
+		}
+
+		place(slot, pos);
+	}
+
+	private void place(int slot, int pos) {
+		heap[pos] = slot;
+		heapPos[slot] = pos;
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.tbrc.tools.wordbreak.utils;
+
+import java.text.Normalizer;
+
+/**
+ * NFC normalizes the lines of a text, calling <code>Normalizer</code> only for the lines that
+ * fail the <code>NfcQuickCheck</code>, so that a clean Tibetan text is read without a copy of
+ * each line. It counts the lines that normalization changed, which tells how dirty a corpus is.
+ * <p>
+ * The counts are not synchronized; each thread normalizes with its own instance.
+ *
+ * @author Chris
+ */
+public class TibetanNormalizer {
+
+	private int lineCount = 0;
+
+	private int changedCount = 0;
+
+	/**
+	 * @return the NFC form of <code>line</code>, <code>line</code> itself if it is already NFC
+	 */
+	public String normalize(String line) {
+		String normalized = normalizePart(line);
+
+		countLine(normalized != line);
+		return normalized;
+	}
+
+	/**
+	 * As <code>normalize</code>, for a part of a line cut before or after a character NFC neither
+	 * reorders nor composes across, such as clause punctuation or a tsheg. The line is counted by
+	 * <code>countLine</code> once all its parts are normalized.
+	 *
+	 * @return the NFC form of <code>part</code>, <code>part</code> itself if it is already NFC
+	 */
+	public String normalizePart(String part) {
+		if (NfcQuickCheck.isNormalized(part)) {
+			return part;
+		}
+
+		String normalized = Normalizer.normalize(part, Normalizer.Form.NFC);
+
+		return normalized.equals(part) ? part : normalized;
+	}
+
+	/**
+	 * Counts a line whose parts were normalized by <code>normalizePart</code>.
+	 *
+	 * @param changed whether normalization changed any of its parts
+	 */
+	public void countLine(boolean changed) {
+		lineCount++;
+
+		if (changed) {
+			changedCount++;
+		}
+	}
+
+	/**
+	 * @return the number of lines normalized so far
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of lines that were not NFC
+	 */
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+}